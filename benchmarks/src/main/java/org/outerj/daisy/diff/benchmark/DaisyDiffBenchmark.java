@@ -0,0 +1,77 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.outerj.daisy.diff.DaisyDiff;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Measures complete comparisons through {@link DaisyDiff}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaisyDiffBenchmark {
+
+    @Param( { "corpus", "x10", "x100", "synthetic1000" })
+    public String input;
+
+    private List<Documents.Pair> pairs;
+
+    @Setup
+    public void setUp() throws Exception {
+        pairs = new Documents(input).getPairs();
+    }
+
+    @Benchmark
+    public void diffHTML() throws Exception {
+        for (Documents.Pair pair : pairs) {
+            // diffHTML reads XML, so it gets the cleaned documents
+            DaisyDiff.diffHTML(new InputSource(new StringReader(pair
+                    .getOldXhtml())), new InputSource(new StringReader(pair
+                    .getNewXhtml())), new DefaultHandler(), "diff",
+                    Locale.ENGLISH);
+        }
+    }
+
+    @Benchmark
+    public void diffTag() throws Exception {
+        for (Documents.Pair pair : pairs) {
+            DaisyDiff.diffTag(pair.getOldHtml(), pair.getNewHtml(),
+                    new DefaultHandler());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.compare.internal.LCSSettings;
+import org.eclipse.compare.rangedifferencer.RangeDifference;
+import org.eclipse.compare.rangedifferencer.RangeDifferencer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.outerj.daisy.diff.html.HTMLDiffer;
+import org.outerj.daisy.diff.html.HtmlSaxDiffOutput;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.dom.TagNode;
+import org.outerj.daisy.diff.output.DiffOutput;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Measures the phases of {@link HTMLDiffer#diff(TextNodeComparator, TextNodeComparator)}
+ * on trees that were already built: finding the differences between the
+ * text nodes, comparing the ancestors of the unchanged text nodes and
+ * writing the result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffBenchmark {
+
+    @Param( { "corpus", "x10", "x100", "synthetic1000" })
+    public String input;
+
+    private List<Documents.Pair> pairs;
+
+    private List<TextNodeComparator[]> comparators;
+
+    // the unchanged ranges of each pair: leftStart, leftEnd, rightStart,
+    // rightEnd
+    private List<List<int[]>> unchangedRanges;
+
+    // the bodies of the new documents after the comparison
+    private List<TagNode> diffedBodies;
+
+    private final LCSSettings settings = new LCSSettings();
+
+    @Setup
+    public void setUp() throws Exception {
+        pairs = new Documents(input).getPairs();
+        comparators = new ArrayList<TextNodeComparator[]>();
+        unchangedRanges = new ArrayList<List<int[]>>();
+        diffedBodies = new ArrayList<TagNode>();
+        for (Documents.Pair pair : pairs) {
+            TextNodeComparator[] pairComparators = pair.createComparators();
+            comparators.add(pairComparators);
+            unchangedRanges.add(getUnchangedRanges(pairComparators[0],
+                    pairComparators[1]));
+
+            final TagNode[] body = new TagNode[1];
+            TextNodeComparator[] diffed = pair.createComparators();
+            new HTMLDiffer(new DiffOutput() {
+                public void generateOutput(TagNode node) {
+                    body[0] = node;
+                }
+            }).diff(diffed[0], diffed[1]);
+            diffedBodies.add(body[0]);
+        }
+    }
+
+    private List<int[]> getUnchangedRanges(TextNodeComparator left,
+            TextNodeComparator right) {
+        List<int[]> result = new ArrayList<int[]>();
+        int leftIndex = 0;
+        int rightIndex = 0;
+        for (RangeDifference d : RangeDifferencer.findDifferences(settings,
+                left, right)) {
+            if (d.leftStart() > leftIndex)
+                result.add(new int[] { leftIndex, d.leftStart(), rightIndex,
+                        d.rightStart() });
+            leftIndex = d.leftEnd();
+            rightIndex = d.rightEnd();
+        }
+        if (leftIndex < left.getRangeCount())
+            result.add(new int[] { leftIndex, left.getRangeCount(),
+                    rightIndex, right.getRangeCount() });
+        return result;
+    }
+
+    /**
+     * Fresh trees for every call, since comparing the ancestors marks the
+     * text nodes.
+     */
+    @State(Scope.Thread)
+    public static class FreshComparators {
+
+        List<TextNodeComparator[]> comparators;
+
+        @Setup(Level.Invocation)
+        public void setUp(DiffBenchmark benchmark) throws Exception {
+            comparators = new ArrayList<TextNodeComparator[]>();
+            for (Documents.Pair pair : benchmark.pairs) {
+                comparators.add(pair.createComparators());
+            }
+        }
+    }
+
+    @Benchmark
+    public void findDifferences(Blackhole blackhole) {
+        for (TextNodeComparator[] pair : comparators) {
+            blackhole.consume(RangeDifferencer.findDifferences(settings,
+                    pair[0], pair[1]));
+        }
+    }
+
+    @Benchmark
+    public void handlePossibleChangedPart(FreshComparators fresh) {
+        for (int i = 0; i < fresh.comparators.size(); i++) {
+            TextNodeComparator[] pair = fresh.comparators.get(i);
+            for (int[] range : unchangedRanges.get(i)) {
+                pair[1].handlePossibleChangedPart(range[0], range[1],
+                        range[2], range[3], pair[0]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void generateOutput() throws Exception {
+        HtmlSaxDiffOutput output = new HtmlSaxDiffOutput(new DefaultHandler(),
+                "diff");
+        for (TagNode body : diffedBodies) {
+            output.generateOutput(body);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+
+import org.outerj.daisy.diff.HtmlCleaner;
+import org.outerj.daisy.diff.helper.SaxBuffer;
+import org.outerj.daisy.diff.html.DocumentGenerator;
+import org.outerj.daisy.diff.html.DocumentGenerator.Edit;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * The documents the benchmarks compare, read from the test corpus.
+ * <p>
+ * The input <code>corpus</code> is every pair of <code>a.html</code> and
+ * <code>b.html</code> below the testdata directory. An input like
+ * <code>x100</code> is a single pair whose bodies are the bodies of all
+ * those documents, repeated 100 times. An input like
+ * <code>synthetic1000</code> is a pair of documents of about 1000 KB made by
+ * the {@link DocumentGenerator}, with edited words, attributes, table rows
+ * and moved and deleted blocks.
+ * <p>
+ * The testdata directory is given by the system property
+ * <code>daisydiff.testdata</code>, or else the one the module was built
+ * against.
+ */
+public class Documents {
+
+    private static final Pattern BODY = Pattern.compile(
+            "<body[^>]*>(.*)</body>", Pattern.CASE_INSENSITIVE
+                    | Pattern.DOTALL);
+
+    private final List<Pair> pairs;
+
+    public Documents(String input) throws IOException, SAXException {
+        if (input.startsWith("synthetic")) {
+            pairs = new ArrayList<Pair>(1);
+            pairs.add(generate(Integer.parseInt(input.substring(9)) * 1024));
+            return;
+        }
+
+        List<Pair> corpus = new ArrayList<Pair>();
+        readCorpus(getTestdata(), corpus);
+        if (corpus.isEmpty())
+            throw new IOException("No test documents found in "
+                    + getTestdata());
+
+        if (input.equals("corpus")) {
+            pairs = corpus;
+        } else if (input.startsWith("x")) {
+            pairs = new ArrayList<Pair>(1);
+            pairs.add(scale(corpus, Integer.parseInt(input.substring(1))));
+        } else {
+            throw new IllegalArgumentException("Unknown input: " + input);
+        }
+    }
+
+    public List<Pair> getPairs() {
+        return pairs;
+    }
+
+    /**
+     * An old and a new version of a document, with the forms every phase of
+     * the comparison starts from.
+     */
+    public static class Pair {
+
+        private final String oldHtml;
+
+        private final String newHtml;
+
+        private SaxBuffer oldEvents;
+
+        private SaxBuffer newEvents;
+
+        private String oldXhtml;
+
+        private String newXhtml;
+
+        Pair(String oldHtml, String newHtml) throws IOException, SAXException {
+            this.oldHtml = oldHtml;
+            this.newHtml = newHtml;
+            oldEvents = clean(oldHtml);
+            newEvents = clean(newHtml);
+            oldXhtml = serialize(oldEvents);
+            newXhtml = serialize(newEvents);
+        }
+
+        public String getOldHtml() {
+            return oldHtml;
+        }
+
+        public String getNewHtml() {
+            return newHtml;
+        }
+
+        /**
+         * @return the events of the cleaned old document
+         */
+        public SaxBuffer getOldEvents() {
+            return oldEvents;
+        }
+
+        public SaxBuffer getNewEvents() {
+            return newEvents;
+        }
+
+        /**
+         * @return the cleaned old document as well-formed XHTML
+         */
+        public String getOldXhtml() {
+            return oldXhtml;
+        }
+
+        public String getNewXhtml() {
+            return newXhtml;
+        }
+
+        /**
+         * Builds new comparators for both versions, as
+         * {@link org.outerj.daisy.diff.Main} does.
+         * @return the old and the new comparator
+         */
+        public TextNodeComparator[] createComparators() throws SAXException {
+            TokenDictionary tokenDictionary = new TokenDictionary();
+            DomTreeBuilder oldHandler = new DomTreeBuilder(tokenDictionary);
+            oldEvents.toSAX(oldHandler);
+            DomTreeBuilder newHandler = new DomTreeBuilder(tokenDictionary);
+            newEvents.toSAX(newHandler);
+            return new TextNodeComparator[] {
+                    new TextNodeComparator(oldHandler, Locale.ENGLISH),
+                    new TextNodeComparator(newHandler, Locale.ENGLISH) };
+        }
+    }
+
+    private static File getTestdata() throws IOException {
+        String testdata = System.getProperty("daisydiff.testdata");
+        if (testdata == null) {
+            Properties properties = new Properties();
+            InputStream in = Documents.class
+                    .getResourceAsStream("/benchmark.properties");
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            testdata = properties.getProperty("testdata");
+        }
+        return new File(testdata);
+    }
+
+    private static void readCorpus(File directory, List<Pair> corpus)
+            throws IOException, SAXException {
+        File oldFile = new File(directory, "a.html");
+        File newFile = new File(directory, "b.html");
+        if (oldFile.isFile() && newFile.isFile()) {
+            corpus.add(new Pair(read(oldFile), read(newFile)));
+            return;
+        }
+        File[] children = directory.listFiles();
+        if (children == null)
+            return;
+        // the same order on every platform
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory())
+                readCorpus(child, corpus);
+        }
+    }
+
+    private static Pair scale(List<Pair> corpus, int times)
+            throws IOException, SAXException {
+        StringBuilder oldHtml = new StringBuilder("<html><body>");
+        StringBuilder newHtml = new StringBuilder("<html><body>");
+        for (int i = 0; i < times; i++) {
+            for (Pair pair : corpus) {
+                oldHtml.append(getBody(pair.getOldHtml()));
+                newHtml.append(getBody(pair.getNewHtml()));
+            }
+        }
+        oldHtml.append("</body></html>");
+        newHtml.append("</body></html>");
+        return new Pair(oldHtml.toString(), newHtml.toString());
+    }
+
+    private static Pair generate(int size) throws IOException, SAXException {
+        DocumentGenerator generator = new DocumentGenerator(42);
+        generator.setSize(size);
+        generator.setEditRate(Edit.WORDS, 0.01);
+        generator.setEditRate(Edit.ATTRIBUTES, 0.005);
+        generator.setEditRate(Edit.TABLE_ROWS, 0.01);
+        generator.setEditRate(Edit.MOVES, 0.002);
+        generator.setEditRate(Edit.DELETIONS, 0.002);
+        String[] documents = generator.generatePair();
+        return new Pair(documents[0], documents[1]);
+    }
+
+    private static String getBody(String html) {
+        Matcher matcher = BODY.matcher(html);
+        return matcher.find() ? matcher.group(1) : html;
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+            String text = out.toString("UTF-8");
+            // a byte order mark is not part of the document
+            return text.startsWith("\uFEFF") ? text.substring(1) : text;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static SaxBuffer clean(String html) throws IOException,
+            SAXException {
+        SaxBuffer events = new SaxBuffer();
+        new HtmlCleaner().cleanAndParse(new InputSource(new StringReader(
+                html)), events);
+        return events;
+    }
+
+    private static String serialize(SaxBuffer events) throws SAXException {
+        try {
+            TransformerHandler handler = ((SAXTransformerFactory) TransformerFactory
+                    .newInstance()).newTransformerHandler();
+            // the html method would not close empty elements
+            handler.getTransformer().setOutputProperty(OutputKeys.METHOD,
+                    "xml");
+            handler.getTransformer().setOutputProperty(
+                    OutputKeys.OMIT_XML_DECLARATION, "yes");
+            StringWriter result = new StringWriter();
+            handler.setResult(new StreamResult(result));
+            events.toSAX(handler);
+            return result.toString();
+        } catch (TransformerConfigurationException e) {
+            throw new SAXException(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.benchmark;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.outerj.daisy.diff.HtmlCleaner;
+import org.outerj.daisy.diff.helper.NekoHtmlParser;
+import org.outerj.daisy.diff.helper.SaxBuffer;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
+import org.xml.sax.InputSource;
+
+/**
+ * Measures reading the old version of every document: parsing it, cleaning
+ * it and building the tree of text nodes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param( { "corpus", "x10", "x100", "synthetic1000" })
+    public String input;
+
+    private List<Documents.Pair> pairs;
+
+    @Setup
+    public void setUp() throws Exception {
+        pairs = new Documents(input).getPairs();
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws Exception {
+        NekoHtmlParser parser = new NekoHtmlParser();
+        for (Documents.Pair pair : pairs) {
+            blackhole.consume(parser.parse(new InputSource(new StringReader(
+                    pair.getOldHtml()))));
+        }
+    }
+
+    @Benchmark
+    public void clean(Blackhole blackhole) throws Exception {
+        HtmlCleaner cleaner = new HtmlCleaner();
+        for (Documents.Pair pair : pairs) {
+            SaxBuffer events = new SaxBuffer();
+            cleaner.cleanAndParse(new InputSource(new StringReader(pair
+                    .getOldHtml())), events);
+            blackhole.consume(events);
+        }
+    }
+
+    @Benchmark
+    public void cleanWithoutXsl(Blackhole blackhole) throws Exception {
+        HtmlCleaner cleaner = new HtmlCleaner(false);
+        for (Documents.Pair pair : pairs) {
+            SaxBuffer events = new SaxBuffer();
+            cleaner.cleanAndParse(new InputSource(new StringReader(pair
+                    .getOldHtml())), events);
+            blackhole.consume(events);
+        }
+    }
+
+    @Benchmark
+    public void buildTree(Blackhole blackhole) throws Exception {
+        for (Documents.Pair pair : pairs) {
+            DomTreeBuilder handler = new DomTreeBuilder(new TokenDictionary());
+            pair.getOldEvents().toSAX(handler);
+            blackhole.consume(handler.getBodyNode());
+        }
+    }
+}
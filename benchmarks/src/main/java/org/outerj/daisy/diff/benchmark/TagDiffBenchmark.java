@@ -0,0 +1,95 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.compare.internal.LCSSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.outerj.daisy.diff.output.TextDiffOutput;
+import org.outerj.daisy.diff.tag.TagComparator;
+import org.outerj.daisy.diff.tag.TagDiffer;
+
+/**
+ * Measures the tag diff of a generated document with one small change in
+ * every paragraph, so the number of differences grows with the document.
+ * The differences are found with the greedy method, since an exact edit
+ * script takes minutes for this many differences.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagDiffBenchmark {
+
+    @Param( { "1000", "10000" })
+    public int differences;
+
+    private String oldText;
+
+    private String newText;
+
+    private final LCSSettings settings = new LCSSettings();
+
+    @Setup
+    public void setUp() {
+        StringBuilder oldBuilder = new StringBuilder();
+        StringBuilder newBuilder = new StringBuilder();
+        for (int i = 0; i < differences; i++) {
+            // enough unchanged words between the changes to keep them apart
+            String paragraph = "<p class=\"para\">Paragraph " + i
+                    + " has some text that stays the same, and one word ";
+            oldBuilder.append(paragraph).append("old").append(i).append(
+                    ".</p>\n");
+            newBuilder.append(paragraph).append("new").append(i).append(
+                    ".</p>\n");
+        }
+        oldText = oldBuilder.toString();
+        newText = newBuilder.toString();
+        settings.setUseGreedyMethod(true);
+    }
+
+    @Benchmark
+    public void diff(final Blackhole blackhole) throws Exception {
+        new TagDiffer(new TextDiffOutput() {
+            public void addClearPart(String text) {
+                blackhole.consume(text);
+            }
+
+            public void addRemovedPart(String text) {
+                blackhole.consume(text);
+            }
+
+            public void addAddedPart(String text) {
+                blackhole.consume(text);
+            }
+        }, settings).diff(new TagComparator(oldText),
+                new TagComparator(newText));
+    }
+}
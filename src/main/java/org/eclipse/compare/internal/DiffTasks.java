@@ -0,0 +1,70 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eclipse.compare.internal;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Runs comparisons on an executor supplied by the caller.
+ */
+public final class DiffTasks {
+
+    private DiffTasks() {
+    }
+
+    /**
+     * Hands the task to the executor, or runs it on the calling thread if
+     * the executor does not accept it, for instance because its queue is
+     * full.
+     * @param executor - the executor to run the task
+     * @param task - the task
+     */
+    public static void execute(Executor executor, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Waits for the result of the task and rethrows what it threw.
+     * @param task - the task
+     * @return the result of the task
+     * @throws OperationCanceledException if the calling thread is
+     * interrupted while waiting
+     */
+    public static <T> T getResult(Future<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationCanceledException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+}
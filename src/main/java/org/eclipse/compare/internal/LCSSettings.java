@@ -17,6 +17,35 @@ package org.eclipse.compare.internal;
 
 public class LCSSettings {
 
+    /**
+     * The algorithms that compute the edit script when the greedy method is
+     * not used.
+     */
+    public enum Algorithm {
+
+        /**
+         * Myers' O(ND) algorithm, keeping an edit for every diagonal visited,
+         * so memory grows with the square of the edit distance.
+         */
+        MYERS,
+
+        /**
+         * The same edit scripts as {@link #MYERS}, reconstructed in O(N + M)
+         * space per level of recursion at the cost of replaying the search
+         * about log(D) times.
+         */
+        LINEAR_SPACE_MYERS,
+
+        /**
+         * Histogram diff: aligns the entities that occur least often first
+         * and compares the regions between them. Not a minimal edit script,
+         * but unrelated text is not matched on frequent words and localized
+         * edits in large documents are found quickly. Needs comparators
+         * providing tokens, otherwise {@link #MYERS} is used.
+         */
+        HISTOGRAM
+    }
+
     // the value of N*M when to start binding the run time
     private double tooLong = 10000000.0;
 
@@ -24,6 +53,27 @@ public class LCSSettings {
 
     private boolean useGreedyMethod = false;
 
+    private Algorithm algorithm = Algorithm.MYERS;
+
+    private long timeLimit = 0;
+
+    private int maxEditDistance = 0;
+
+    public LCSSettings() {
+    }
+
+    /**
+     * Creates a copy of the given settings.
+     */
+    public LCSSettings(LCSSettings settings) {
+        tooLong = settings.tooLong;
+        powLimit = settings.powLimit;
+        useGreedyMethod = settings.useGreedyMethod;
+        algorithm = settings.algorithm;
+        timeLimit = settings.timeLimit;
+        maxEditDistance = settings.maxEditDistance;
+    }
+
     // the value of N*M when to start binding the run time
     public double getTooLong() {
         return tooLong;
@@ -50,4 +100,38 @@ public class LCSSettings {
         this.useGreedyMethod = useGreedyMethod;
     }
 
+    // the algorithm used when the greedy method is not used
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    // the algorithm used when the greedy method is not used
+    public void setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    // the time in milliseconds after which the rest of a comparison is
+    // reported as a single change, 0 for no limit
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    // the time in milliseconds after which the rest of a comparison is
+    // reported as a single change, 0 for no limit
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    // the edit distance after which the rest of a comparison is reported as
+    // a single change, 0 for no limit
+    public int getMaxEditDistance() {
+        return maxEditDistance;
+    }
+
+    // the edit distance after which the rest of a comparison is reported as
+    // a single change, 0 for no limit
+    public void setMaxEditDistance(int maxEditDistance) {
+        this.maxEditDistance = maxEditDistance;
+    }
+
 }
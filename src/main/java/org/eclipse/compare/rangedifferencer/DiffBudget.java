@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2006 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.compare.rangedifferencer;
+
+import org.eclipse.compare.internal.LCSSettings;
+
+/**
+ * Bounds the time and the edit distance a comparison may take. When the
+ * budget is exhausted the differencer does not give up: it keeps the
+ * differences found on the path that made the most progress so far and
+ * reports everything after it as a single change, much like
+ * <code>LCS.longestCommonSubsequence</code> bounds its run time with
+ * <code>tooLong</code> and <code>powLimit</code>.
+ * <p>
+ * The time limit starts counting when the budget is created. A budget may be
+ * shared by the comparisons that make up one larger comparison, such as the
+ * two scripts of a three-way comparison.
+ *
+ * @see LCSSettings#setTimeLimit(long)
+ * @see LCSSettings#setMaxEditDistance(int)
+ */
+public class DiffBudget {
+
+    private final long deadline;
+
+    private final int maxEditDistance;
+
+    private volatile boolean degraded = false;
+
+    /**
+     * Creates a budget with the limits of the given settings.
+     *
+     * @param settings
+     *                the settings holding the limits
+     */
+    public DiffBudget(LCSSettings settings) {
+        this(settings.getTimeLimit(), settings.getMaxEditDistance());
+    }
+
+    /**
+     * Creates a budget.
+     *
+     * @param timeLimit
+     *                the time in milliseconds from now after which no more
+     *                differences are searched, or 0 for no limit
+     * @param maxEditDistance
+     *                the largest edit distance searched, or 0 for no limit
+     */
+    public DiffBudget(long timeLimit, int maxEditDistance) {
+        this.deadline = timeLimit > 0 ? System.nanoTime() + timeLimit
+                * 1000000L : 0;
+        this.maxEditDistance = maxEditDistance > 0 ? maxEditDistance
+                : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns whether a comparison using this budget ran out of it and
+     * replaced the rest of its input by a single change, so the differences
+     * found are coarser than they could be.
+     *
+     * @return <code>true</code> if a comparison was degraded
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /*
+     * Marks this budget as degraded.
+     */
+    /* package */void setDegraded() {
+        degraded = true;
+    }
+
+    /*
+     * Tests if the time is up.
+     */
+    /* package */boolean isOverTime() {
+        return deadline != 0 && System.nanoTime() - deadline > 0;
+    }
+
+    /*
+     * Tests if a differencer may not search the given edit distance.
+     */
+    /* package */boolean isExhausted(int editDistance) {
+        return editDistance > maxEditDistance || isOverTime();
+    }
+
+    /*
+     * Marks this budget as degraded and reports everything from the given
+     * start indices on, except the common suffix, as a single change after
+     * the given differences. The change is merged with the last difference if
+     * it is adjacent.
+     */
+    /* package */RangeDifference[] degrade(RangeDifference[] differences,
+            IRangeComparator right, int[] rightTokens, int rightStart,
+            IRangeComparator left, int[] leftTokens, int leftStart) {
+        setDegraded();
+
+        int rightEnd = right.getRangeCount();
+        int leftEnd = left.getRangeCount();
+        while (rightEnd > rightStart
+                && leftEnd > leftStart
+                && (rightTokens != null ? rightTokens[rightEnd - 1] == leftTokens[leftEnd - 1]
+                        : right.rangesEqual(rightEnd - 1, left, leftEnd - 1))) {
+            rightEnd--;
+            leftEnd--;
+        }
+        if (rightEnd == rightStart && leftEnd == leftStart)
+            return differences;
+
+        if (differences.length > 0) {
+            RangeDifference last = differences[differences.length - 1];
+            if (last.rightEnd() == rightStart && last.leftEnd() == leftStart) {
+                last.fRightLength = rightEnd - last.fRightStart;
+                last.fLeftLength = leftEnd - last.fLeftStart;
+                return differences;
+            }
+        }
+        RangeDifference[] result = new RangeDifference[differences.length + 1];
+        System.arraycopy(differences, 0, result, 0, differences.length);
+        result[differences.length] = new RangeDifference(
+                RangeDifference.CHANGE, rightStart, rightEnd - rightStart,
+                leftStart, leftEnd - leftStart);
+        return result;
+    }
+}
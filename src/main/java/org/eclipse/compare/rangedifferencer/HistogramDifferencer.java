@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2006 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.compare.rangedifferencer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * A histogram differencer in the spirit of patience diff: instead of a
+ * minimal edit script it looks for the entity that occurs least often in the
+ * region being compared, aligns the longest common run around it and then
+ * handles the regions before and after that run the same way.
+ * <p>
+ * Anchoring on rare entities (in a text: rare words) avoids aligning
+ * unrelated text on frequent entities such as "the" and "and", and a
+ * localized edit in a long document only costs work proportional to the
+ * region around it. Regions without a usable anchor are handed to
+ * {@link OldDifferencer}.
+ * <p>
+ * The entities are grouped by their tokens, so both comparators must be
+ * {@link ITokenComparator}s sharing a token numbering; otherwise the
+ * comparison falls back to <code>OldDifferencer</code> entirely.
+ * <p>
+ * When the time of a {@link DiffBudget} is up, every region still to compare
+ * is reported as a single change. The edit distance limit applies to each
+ * region handed to <code>OldDifferencer</code> separately.
+ */
+/* package */class HistogramDifferencer {
+
+    private static final RangeDifference[] EMPTY_RESULT = new RangeDifference[0];
+
+    /**
+     * Entities occurring more often than this in a region are not used as
+     * anchors.
+     */
+    private static final int MAX_CHAIN_LENGTH = 64;
+
+    private final DiffBudget budget;
+
+    private final int[] rightTokens, leftTokens;
+
+    // number of occurrences of each token in the current right region
+    private final int[] counts;
+
+    // last occurrence of each token in the current right region
+    private final int[] heads;
+
+    // previous occurrence of the same token in the current right region
+    private final int[] previous;
+
+    private final List<RangeDifference> result = new ArrayList<RangeDifference>();
+
+    // the longest common run found around the rarest anchor
+    private int bestCount, bestRightStart, bestRightEnd, bestLeftStart,
+            bestLeftEnd;
+
+    public static RangeDifference[] findDifferences(IProgressMonitor pm,
+            IRangeComparator left, IRangeComparator right) {
+        return findDifferences(pm, null, left, right);
+    }
+
+    public static RangeDifference[] findDifferences(IProgressMonitor pm,
+            DiffBudget budget, IRangeComparator left, IRangeComparator right) {
+
+        // assert that both IRangeComparators are of the same class
+        Assert.isTrue(right.getClass().equals(left.getClass()));
+
+        int[] rightTokens = RangeDifferencer.getTokens(right, left);
+        int[] leftTokens = rightTokens == null ? null : RangeDifferencer
+                .getTokens(left, right);
+        if (rightTokens == null)
+            return OldDifferencer.findDifferences(pm, budget, left, right);
+
+        return new HistogramDifferencer(budget, rightTokens, leftTokens)
+                .findDifferences(pm);
+    }
+
+    private HistogramDifferencer(DiffBudget budget, int[] rightTokens,
+            int[] leftTokens) {
+        this.budget = budget;
+        int minToken = 0;
+        int maxToken = -1;
+        for (int token : rightTokens) {
+            minToken = Math.min(minToken, token);
+            maxToken = Math.max(maxToken, token);
+        }
+        for (int token : leftTokens) {
+            minToken = Math.min(minToken, token);
+            maxToken = Math.max(maxToken, token);
+        }
+        // tokens such as hashes are numbered densely to index the tables
+        int size = rightTokens.length + leftTokens.length;
+        if (minToken < 0 || maxToken > 2 * size + 1024) {
+            Map<Integer, Integer> numbers = new HashMap<Integer, Integer>();
+            rightTokens = renumber(rightTokens, numbers);
+            leftTokens = renumber(leftTokens, numbers);
+            maxToken = numbers.size() - 1;
+        }
+        this.rightTokens = rightTokens;
+        this.leftTokens = leftTokens;
+        counts = new int[maxToken + 1];
+        heads = new int[maxToken + 1];
+        for (int i = 0; i < heads.length; i++)
+            heads[i] = -1;
+        previous = new int[rightTokens.length];
+    }
+
+    private static int[] renumber(int[] tokens, Map<Integer, Integer> numbers) {
+        int[] result = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            Integer number = numbers.get(tokens[i]);
+            if (number == null) {
+                number = numbers.size();
+                numbers.put(tokens[i], number);
+            }
+            result[i] = number;
+        }
+        return result;
+    }
+
+    private RangeDifference[] findDifferences(IProgressMonitor pm) {
+        // regions still to compare as rightStart, rightEnd, leftStart,
+        // leftEnd; the leftmost region is on top so differences are found
+        // in order
+        int[] regions = new int[64];
+        int top = 0;
+        regions[top++] = 0;
+        regions[top++] = rightTokens.length;
+        regions[top++] = 0;
+        regions[top++] = leftTokens.length;
+
+        while (top > 0) {
+            if (pm != null && pm.isCanceled())
+                return EMPTY_RESULT;
+
+            int leftEnd = regions[--top];
+            int leftStart = regions[--top];
+            int rightEnd = regions[--top];
+            int rightStart = regions[--top];
+
+            // the common prefix and suffix are never part of a difference
+            while (rightStart < rightEnd && leftStart < leftEnd
+                    && rightTokens[rightStart] == leftTokens[leftStart]) {
+                rightStart++;
+                leftStart++;
+            }
+            while (rightStart < rightEnd && leftStart < leftEnd
+                    && rightTokens[rightEnd - 1] == leftTokens[leftEnd - 1]) {
+                rightEnd--;
+                leftEnd--;
+            }
+            if (rightStart == rightEnd && leftStart == leftEnd)
+                continue;
+            if (rightStart == rightEnd || leftStart == leftEnd) {
+                addChange(rightStart, rightEnd, leftStart, leftEnd);
+                continue;
+            }
+            if (budget != null && budget.isOverTime()) {
+                budget.setDegraded();
+                addChange(rightStart, rightEnd, leftStart, leftEnd);
+                continue;
+            }
+
+            if (!findRarestRun(rightStart, rightEnd, leftStart, leftEnd)) {
+                if (bestCount == 0)
+                    addChange(rightStart, rightEnd, leftStart, leftEnd);
+                else
+                    addMyersDifferences(pm, rightStart, rightEnd, leftStart,
+                            leftEnd);
+                continue;
+            }
+
+            if (top + 8 > regions.length) {
+                int[] newRegions = new int[regions.length * 2];
+                System.arraycopy(regions, 0, newRegions, 0, top);
+                regions = newRegions;
+            }
+            // the region after the run, then the region before it
+            regions[top++] = bestRightEnd;
+            regions[top++] = rightEnd;
+            regions[top++] = bestLeftEnd;
+            regions[top++] = leftEnd;
+            regions[top++] = rightStart;
+            regions[top++] = bestRightStart;
+            regions[top++] = leftStart;
+            regions[top++] = bestLeftStart;
+        }
+        return result.toArray(EMPTY_RESULT);
+    }
+
+    /*
+     * Finds the longest common run around the entity of the left region that
+     * occurs least often in the right region. Returns false if there is no
+     * such entity occurring at most MAX_CHAIN_LENGTH times; bestCount is then
+     * 0 if the regions have no entity in common at all.
+     */
+    private boolean findRarestRun(int rightStart, int rightEnd,
+            int leftStart, int leftEnd) {
+        for (int i = rightStart; i < rightEnd; i++) {
+            int token = rightTokens[i];
+            counts[token]++;
+            previous[i] = heads[token];
+            heads[token] = i;
+        }
+
+        bestCount = MAX_CHAIN_LENGTH;
+        int bestLength = 0;
+        boolean common = false;
+        for (int j = leftStart; j < leftEnd;) {
+            int count = counts[leftTokens[j]];
+            int nextJ = j + 1;
+            if (count > 0)
+                common = true;
+            if (count > 0 && count <= bestCount) {
+                for (int i = heads[leftTokens[j]]; i >= rightStart; i = previous[i]) {
+                    int runRightStart = i;
+                    int runLeftStart = j;
+                    int runCount = count;
+                    while (runRightStart > rightStart
+                            && runLeftStart > leftStart
+                            && rightTokens[runRightStart - 1] == leftTokens[runLeftStart - 1]) {
+                        runRightStart--;
+                        runLeftStart--;
+                        runCount = Math.min(runCount,
+                                counts[rightTokens[runRightStart]]);
+                    }
+                    int runRightEnd = i + 1;
+                    int runLeftEnd = j + 1;
+                    while (runRightEnd < rightEnd && runLeftEnd < leftEnd
+                            && rightTokens[runRightEnd] == leftTokens[runLeftEnd]) {
+                        runCount = Math.min(runCount,
+                                counts[rightTokens[runRightEnd]]);
+                        runRightEnd++;
+                        runLeftEnd++;
+                    }
+                    // entities of the run after j were already considered
+                    nextJ = Math.max(nextJ, runLeftEnd);
+
+                    int length = runRightEnd - runRightStart;
+                    if (runCount < bestCount || runCount == bestCount
+                            && length > bestLength) {
+                        bestCount = runCount;
+                        bestLength = length;
+                        bestRightStart = runRightStart;
+                        bestRightEnd = runRightEnd;
+                        bestLeftStart = runLeftStart;
+                        bestLeftEnd = runLeftEnd;
+                    }
+                }
+            }
+            j = nextJ;
+        }
+
+        for (int i = rightStart; i < rightEnd; i++) {
+            counts[rightTokens[i]] = 0;
+            heads[rightTokens[i]] = -1;
+        }
+
+        if (bestLength > 0)
+            return true;
+        bestCount = common ? MAX_CHAIN_LENGTH + 1 : 0;
+        return false;
+    }
+
+    private void addChange(int rightStart, int rightEnd, int leftStart,
+            int leftEnd) {
+        result.add(new RangeDifference(RangeDifference.CHANGE, rightStart,
+                rightEnd - rightStart, leftStart, leftEnd - leftStart));
+    }
+
+    /*
+     * Compares a region without a usable anchor with a minimal edit script.
+     */
+    private void addMyersDifferences(IProgressMonitor pm, int rightStart,
+            int rightEnd, int leftStart, int leftEnd) {
+        RangeDifference[] differences = OldDifferencer.findDifferences(pm,
+                budget, new TokenRange(leftTokens, leftStart, leftEnd),
+                new TokenRange(rightTokens, rightStart, rightEnd));
+        for (RangeDifference difference : differences) {
+            result.add(new RangeDifference(RangeDifference.CHANGE,
+                    rightStart + difference.rightStart(), difference
+                            .rightLength(), leftStart
+                            + difference.leftStart(), difference.leftLength()));
+        }
+    }
+
+    /*
+     * A region of one of the token arrays.
+     */
+    private static class TokenRange implements IRangeComparator {
+
+        private final int[] tokens;
+
+        private final int start, end;
+
+        TokenRange(int[] tokens, int start, int end) {
+            this.tokens = tokens;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getRangeCount() {
+            return end - start;
+        }
+
+        public boolean rangesEqual(int thisIndex, IRangeComparator other,
+                int otherIndex) {
+            TokenRange otherRange = (TokenRange) other;
+            return tokens[start + thisIndex] == otherRange.tokens[otherRange.start
+                    + otherIndex];
+        }
+
+        public boolean skipRangeComparison(int length, int maxLength,
+                IRangeComparator other) {
+            return false;
+        }
+    }
+}
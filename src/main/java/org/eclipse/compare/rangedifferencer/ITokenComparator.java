@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2006 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.compare.rangedifferencer;
+
+/**
+ * An <code>IRangeComparator</code> whose comparable entities can be
+ * represented by int tokens.
+ * <p>
+ * When both comparators of a comparison offer tokens in the same numbering,
+ * the differencers compare the token arrays directly instead of calling
+ * <code>rangesEqual</code> for every probe.
+ * </p>
+ */
+public interface ITokenComparator extends IRangeComparator {
+
+    /**
+     * Returns the tokens of all comparable entities, numbered such that
+     * <code>rangesEqual(i, other, j)</code> holds if and only if
+     * <code>getTokens(other)[i] == other.getTokens(this)[j]</code>.
+     * 
+     * @param other
+     *                the <code>IRangeComparator</code> to compare with
+     * @return an array of <code>getRangeCount()</code> tokens, or
+     *         <code>null</code> if this comparator shares no token numbering
+     *         with the other one
+     */
+    int[] getTokens(IRangeComparator other);
+}
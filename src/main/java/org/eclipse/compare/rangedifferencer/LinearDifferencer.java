@@ -0,0 +1,422 @@
+/*******************************************************************************
+ * Copyright (c) 2006 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.compare.rangedifferencer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Computes exactly the same edit scripts as {@link OldDifferencer}, but
+ * without keeping an edit object for every diagonal visited at every edit
+ * distance.
+ * <p>
+ * The greedy search of <code>OldDifferencer</code> only needs the furthest
+ * row of each diagonal of the previous edit distance, which is
+ * O(N + M) ints. The edits on the final path are recovered by divide and
+ * conquer over the edit distance: the search is replayed from a saved state
+ * at d1 to d2 while every diagonal remembers through which diagonal at the
+ * middle distance its path passed. That splits the path at the middle, and
+ * both halves are solved the same way. A single step is solved by replaying
+ * it and recording the edit made on the target diagonal.
+ * <p>
+ * A bidirectional middle snake search would find a different edit script
+ * whenever several scripts of minimal length exist, so the path of the
+ * forward search is reconstructed instead. A diagonal after step d2 only
+ * depends on the diagonals at most d2 - d1 away after step d1, so a replay
+ * only visits that band around its target diagonal, and a saved state only
+ * keeps that band. The bands halve at every level of recursion, so the saved
+ * states take O(D) ints together. The search is replayed once per level, so
+ * it takes at most about log(D) times as long as
+ * <code>OldDifferencer</code>.
+ */
+/* package */class LinearDifferencer {
+
+    private static final RangeDifference[] EMPTY_RESULT = new RangeDifference[0];
+
+    private static final int INSERT = 0;
+
+    private static final int DELETE = 1;
+
+    private final IProgressMonitor pm;
+
+    private final DiffBudget budget;
+
+    private final IRangeComparator right, left;
+
+    private final int[] rightTokens, leftTokens;
+
+    private final int rightSize, leftSize;
+
+    private final int maxDiagonal, origin;
+
+    // the row containing the last d on diagonal k (lastDiagonal[k] = row)
+    private final int[] lastDiagonal;
+
+    private int lower, upper;
+
+    // the diagonal at the middle distance the path on diagonal k passed
+    private int[] through;
+
+    // a replay only visits the diagonals that can still reach diagonal
+    // coneTarget after step coneEnd, or all diagonals if coneTarget is -1
+    private int coneTarget = -1;
+
+    private int coneEnd;
+
+    // the edit script in the order the edits were made: kind, row, column
+    private int[] script = new int[48];
+
+    private int scriptLength = 0;
+
+    // the edit made on the target diagonal by the last step, if any
+    private boolean stepEdited;
+
+    private int stepKind, stepRow, stepCol;
+
+    // the diagonal that made the most progress in the last step
+    private int best;
+
+    private boolean canceled = false;
+
+    /*
+     * The state of the search after a given edit distance, restricted to the
+     * diagonals within a given number of edits of a target diagonal.
+     */
+    private class State {
+
+        private final int from;
+
+        private final int[] rows;
+
+        private final int savedLower, savedUpper;
+
+        State(int target, int edits) {
+            from = Math.max(0, target - edits);
+            int to = Math.min(maxDiagonal, target + edits);
+            rows = new int[to - from + 1];
+            System.arraycopy(lastDiagonal, from, rows, 0, rows.length);
+            savedLower = lower;
+            savedUpper = upper;
+        }
+
+        void restore() {
+            System.arraycopy(rows, 0, lastDiagonal, from, rows.length);
+            lower = savedLower;
+            upper = savedUpper;
+        }
+    }
+
+    public static RangeDifference[] findDifferences(IProgressMonitor pm,
+            IRangeComparator left, IRangeComparator right) {
+        return findDifferences(pm, null, left, right);
+    }
+
+    /*
+     * Finds the differences within the given budget, if any, exactly like
+     * OldDifferencer does. Only the first run of the search is bounded by the
+     * budget, the replays needed to recover the path are not.
+     */
+    public static RangeDifference[] findDifferences(IProgressMonitor pm,
+            DiffBudget budget, IRangeComparator left, IRangeComparator right) {
+
+        // assert that both IRangeComparators are of the same class
+        Assert.isTrue(right.getClass().equals(left.getClass()));
+
+        return new LinearDifferencer(pm, budget, left, right)
+                .findDifferences();
+    }
+
+    private LinearDifferencer(IProgressMonitor pm, DiffBudget budget,
+            IRangeComparator left, IRangeComparator right) {
+        this.pm = pm;
+        this.budget = budget;
+        this.left = left;
+        this.right = right;
+        rightSize = right.getRangeCount();
+        leftSize = left.getRangeCount();
+        rightTokens = RangeDifferencer.getTokens(right, left);
+        leftTokens = rightTokens == null ? null : RangeDifferencer.getTokens(
+                left, right);
+        maxDiagonal = 2 * Math.max(rightSize, leftSize);
+        origin = maxDiagonal / 2;
+        lastDiagonal = new int[maxDiagonal + 1];
+    }
+
+    private RangeDifference[] findDifferences() {
+        // find common prefix
+        int row = 0;
+        while (row < rightSize && row < leftSize
+                && rangesEqual(row, row))
+            row++;
+
+        int initialLower = (row == rightSize) ? origin + 1 : origin - 1;
+        int initialUpper = (row == leftSize) ? origin - 1 : origin + 1;
+
+        if (initialLower > initialUpper)
+            return EMPTY_RESULT;
+
+        lastDiagonal[origin] = row;
+        lower = initialLower;
+        upper = initialUpper;
+        best = origin;
+
+        // run the search once to find the edit distance and the last diagonal
+        int distance = 0;
+        int end = -1;
+        int degradedRow = -1;
+        for (int d = 1; d <= maxDiagonal && end < 0; ++d) {
+            if (pm != null)
+                pm.worked(1);
+
+            if (budget != null && budget.isExhausted(d)) {
+                // recover the path to the diagonal that made the most progress
+                end = best;
+                degradedRow = lastDiagonal[best];
+                break;
+            }
+
+            if (right.skipRangeComparison(d, maxDiagonal, left))
+                return EMPTY_RESULT; // should be something we already found
+
+            end = step(d, -1);
+            if (canceled)
+                return EMPTY_RESULT;
+            distance = d;
+        }
+        // too many differences
+        Assert.isTrue(end >= 0);
+
+        // the diagonals that were never reached are read as 0
+        Arrays.fill(lastDiagonal, 0);
+        lastDiagonal[origin] = row;
+        lower = initialLower;
+        upper = initialUpper;
+        if (distance > 0) {
+            State start = new State(end, distance);
+            through = new int[maxDiagonal + 1];
+            solve(0, distance, start, end);
+            if (canceled)
+                return EMPTY_RESULT;
+        }
+
+        if (degradedRow >= 0)
+            return budget.degrade(createDifferencesRanges(), right,
+                    rightTokens, degradedRow, left, leftTokens, degradedRow
+                            + end - origin);
+        return createDifferencesRanges();
+    }
+
+    /*
+     * Appends the edits made in steps d1 + 1 .. d2 on the path that ends on
+     * diagonal target after step d2 to the script, replaying the search from
+     * the given state at d1. Returns the diagonal the path was on after d1.
+     */
+    private int solve(int d1, int d2, State start, int target) {
+        if (canceled)
+            return target;
+
+        start.restore();
+        coneTarget = target;
+        coneEnd = d2;
+        if (d2 - d1 == 1) {
+            step(d2, target);
+            if (!stepEdited)
+                return target; // the diagonal was not extended in this step
+            addEdit(stepKind, stepRow, stepCol);
+            return stepKind == DELETE ? target + 1 : target - 1;
+        }
+
+        int middle = (d1 + d2) / 2;
+        for (int d = d1 + 1; d <= middle && !canceled; d++)
+            step(d, -1);
+        State middleState = new State(target, d2 - middle);
+
+        int to = Math.min(maxDiagonal, target + d2 - middle);
+        for (int k = Math.max(0, target - d2 + middle); k <= to; k++)
+            through[k] = k;
+        for (int d = middle + 1; d <= d2 && !canceled; d++)
+            step(d, -1);
+        int middleTarget = through[target];
+
+        int from = solve(d1, middle, start, middleTarget);
+        solve(middle, d2, middleState, target);
+        return from;
+    }
+
+    /*
+     * Extends the furthest reaching paths by one edit, exactly like an
+     * iteration of OldDifferencer. Records the edit made on diagonal target.
+     * Returns the diagonal on which the end of both sequences was reached, or
+     * -1.
+     */
+    private int step(int d, int target) {
+        int reached = -1;
+        int progress = -1;
+        stepEdited = false;
+
+        // the diagonals of the cone have the parity of lower and upper
+        int from = lower;
+        int to = upper;
+        if (coneTarget >= 0) {
+            from = Math.max(from, coneTarget - (coneEnd - d));
+            to = Math.min(to, coneTarget + (coneEnd - d));
+        }
+
+        // for each relevant diagonal (-d, -d+2 ..., d-2, d)
+        for (int k = from; k <= to; k += 2) { // k is the current
+                                                // diagonal
+            int row, col, kind;
+
+            if (pm != null && pm.isCanceled()) {
+                canceled = true;
+                return -1;
+            }
+
+            if (k == origin - d || k != origin + d
+                    && lastDiagonal[k + 1] >= lastDiagonal[k - 1]) {
+                //
+                // move down
+                //
+                row = lastDiagonal[k + 1] + 1;
+                kind = DELETE;
+                if (through != null)
+                    through[k] = through[k + 1];
+            } else {
+                //
+                // move right
+                //
+                row = lastDiagonal[k - 1];
+                kind = INSERT;
+                if (through != null)
+                    through[k] = through[k - 1];
+            }
+            col = row + k - origin;
+            if (k == target) {
+                stepEdited = true;
+                stepKind = kind;
+                stepRow = row;
+                stepCol = col;
+            }
+
+            // slide down the diagonal as far as possible
+            while (row < rightSize && col < leftSize && rangesEqual(row, col)) {
+                ++row;
+                ++col;
+            }
+
+            lastDiagonal[k] = row;
+            if (row + col > progress) {
+                progress = row + col;
+                best = k;
+            }
+
+            if (row == rightSize && col == leftSize)
+                reached = k;
+            if (row == rightSize)
+                lower = k + 2;
+            if (col == leftSize)
+                upper = k - 2;
+        }
+        --lower;
+        ++upper;
+        return reached;
+    }
+
+    /*
+     * Tests if two ranges are equal, using the tokens if there are any
+     */
+    private boolean rangesEqual(int rightIndex, int leftIndex) {
+        if (rightTokens != null)
+            return rightTokens[rightIndex] == leftTokens[leftIndex];
+        return right.rangesEqual(rightIndex, left, leftIndex);
+    }
+
+    private void addEdit(int kind, int row, int col) {
+        if (scriptLength + 3 > script.length) {
+            int[] newScript = new int[script.length * 2];
+            System.arraycopy(script, 0, newScript, 0, scriptLength);
+            script = newScript;
+        }
+        script[scriptLength++] = kind;
+        script[scriptLength++] = row;
+        script[scriptLength++] = col;
+    }
+
+    /*
+     * Creates the RangeDifferences out of the edit script exactly like
+     * OldDifferencer does. It coalesces adjacent changes. In addition, indices
+     * are changed such that the ranges are 1) open, i.e, the end of the range
+     * is not included, and 2) are zero based.
+     */
+    private RangeDifference[] createDifferencesRanges() {
+        ArrayList<RangeDifference> result = new ArrayList<RangeDifference>();
+        int ep = 0;
+
+        while (ep < scriptLength) {
+            RangeDifference es = new RangeDifference(RangeDifference.CHANGE);
+
+            if (script[ep] == INSERT) {
+                es.fRightStart = script[ep + 1] + 1;
+                es.fLeftStart = script[ep + 2];
+                int b = ep;
+                do {
+                    ep += 3;
+                    es.fLeftLength++;
+                } while (ep < scriptLength && script[ep] == INSERT
+                        && script[ep + 1] == script[b + 1]);
+            } else {
+                es.fRightStart = script[ep + 1];
+                es.fLeftStart = script[ep + 2];
+
+                int a = ep;
+                //
+                // deleted lines
+                //
+                do {
+                    a = ep;
+                    ep += 3;
+                    es.fRightLength++;
+                } while (ep < scriptLength && script[ep] == DELETE
+                        && script[ep + 1] == script[a + 1] + 1);
+
+                boolean change = (ep < scriptLength && script[ep] == INSERT && script[ep + 1] == script[a + 1]);
+
+                if (change) {
+                    int b = ep;
+                    //
+                    // replacement lines
+                    //
+                    do {
+                        ep += 3;
+                        es.fLeftLength++;
+                    } while (ep < scriptLength && script[ep] == INSERT
+                            && script[ep + 1] == script[b + 1]);
+                } else {
+                    es.fLeftLength = 0;
+                }
+                es.fLeftStart++; // meaning of range changes from "insert
+                                    // after", to "replace with"
+
+            }
+            //
+            // the script commands are 1 based, subtract one to make them zero
+            // based
+            //
+            es.fRightStart--;
+            es.fLeftStart--;
+            result.add(es);
+        }
+        return result.toArray(EMPTY_RESULT);
+    }
+}
@@ -74,12 +74,27 @@ import org.eclipse.core.runtime.IProgressMonitor;
 
     public static RangeDifference[] findDifferences(IProgressMonitor pm,
             IRangeComparator left, IRangeComparator right) {
+        return findDifferences(pm, null, left, right);
+    }
+
+    /*
+     * Finds the differences within the given budget, if any. When it is
+     * exhausted the differences on the diagonal that made the most progress
+     * are kept and the rest is reported as a single change.
+     */
+    public static RangeDifference[] findDifferences(IProgressMonitor pm,
+            DiffBudget budget, IRangeComparator left, IRangeComparator right) {
 
         // assert that both IRangeComparators are of the same class
         Assert.isTrue(right.getClass().equals(left.getClass()));
 
         int rightSize = right.getRangeCount();
         int leftSize = left.getRangeCount();
+
+        // when available, compare int tokens instead of calling rangesEqual
+        int[] rightTokens = RangeDifferencer.getTokens(right, left);
+        int[] leftTokens = rightTokens == null ? null : RangeDifferencer
+                .getTokens(left, right);
         //
         // Differences matrix:
         // only the last d of each diagonal is stored, i.e., lastDiagonal[k] =
@@ -99,7 +114,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 
         // find common prefix
         for (row = 0; row < rightSize && row < leftSize
-                && rangesEqual(right, row, left, row) == true;)
+                && rangesEqual(right, rightTokens, row, left, leftTokens, row);)
             row++;
 
         lastDiagonal[origin] = row;
@@ -110,6 +125,9 @@ import org.eclipse.core.runtime.IProgressMonitor;
         if (lower > upper)
             return EMPTY_RESULT;
 
+        // the diagonal that made the most progress in the last iteration
+        int best = origin;
+
         // System.out.println("findDifferences: " + maxDiagonal + " " + lower +
         // " " + upper);
 
@@ -120,9 +138,19 @@ import org.eclipse.core.runtime.IProgressMonitor;
             if (pm != null)
                 pm.worked(1);
 
+            if (budget != null && budget.isExhausted(d)) {
+                RangeDifference[] differences = script[best] == null ? EMPTY_RESULT
+                        : createDifferencesRanges(script[best]);
+                row = lastDiagonal[best];
+                return budget.degrade(differences, right, rightTokens, row,
+                        left, leftTokens, row + best - origin);
+            }
+
             if (right.skipRangeComparison(d, maxDiagonal, left))
                 return EMPTY_RESULT; // should be something we already found
 
+            int progress = -1;
+
             // for each relevant diagonal (-d, -d+2 ..., d-2, d)
             for (int k = lower; k <= upper; k += 2) { // k is the current
                                                         // diagonal
@@ -154,8 +182,10 @@ import org.eclipse.core.runtime.IProgressMonitor;
                 script[k] = edit;
 
                 // slide down the diagonal as far as possible
-                while (row < rightSize && col < leftSize
-                        && rangesEqual(right, row, left, col) == true) {
+                while (row < rightSize
+                        && col < leftSize
+                        && rangesEqual(right, rightTokens, row, left,
+                                leftTokens, col)) {
                     ++row;
                     ++col;
                 }
@@ -164,6 +194,10 @@ import org.eclipse.core.runtime.IProgressMonitor;
                                                             // value for
                                                             // diagonal index
                 lastDiagonal[k] = row;
+                if (row + col > progress) {
+                    progress = row + col;
+                    best = k;
+                }
 
                 if (row == rightSize && col == leftSize) {
                     // showScript(script[k], right, left);
@@ -183,10 +217,12 @@ import org.eclipse.core.runtime.IProgressMonitor;
     }
 
     /*
-     * Tests if two ranges are equal
+     * Tests if two ranges are equal, using the tokens if there are any
      */
-    private static boolean rangesEqual(IRangeComparator a, int ai,
-            IRangeComparator b, int bi) {
+    private static boolean rangesEqual(IRangeComparator a, int[] aTokens,
+            int ai, IRangeComparator b, int[] bTokens, int bi) {
+        if (aTokens != null)
+            return aTokens[ai] == bTokens[bi];
         return a.rangesEqual(ai, b, bi);
     }
 
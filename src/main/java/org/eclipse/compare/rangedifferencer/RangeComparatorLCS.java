@@ -24,6 +24,9 @@ import org.eclipse.core.runtime.SubMonitor;
 
     private final IRangeComparator comparator1, comparator2;
 
+    // the tokens of both comparators, or null if they have none in common
+    private final int[] tokens1, tokens2;
+
     private int[][] lcs;
 
     public static RangeDifference[] findDifferences(IProgressMonitor pm,
@@ -44,6 +47,10 @@ import org.eclipse.core.runtime.SubMonitor;
             IRangeComparator comparator2) {
         this.comparator1 = comparator1;
         this.comparator2 = comparator2;
+        int[] tokens = RangeDifferencer.getTokens(comparator1, comparator2);
+        this.tokens1 = tokens;
+        this.tokens2 = tokens == null ? null : RangeDifferencer.getTokens(
+                comparator2, comparator1);
     }
 
     @Override
@@ -63,6 +70,8 @@ import org.eclipse.core.runtime.SubMonitor;
 
     @Override
     protected boolean isRangeEqual(int i1, int i2) {
+        if (tokens1 != null)
+            return tokens1[i1] == tokens2[i2];
         return comparator1.rangesEqual(i1, comparator2, i2);
     }
 
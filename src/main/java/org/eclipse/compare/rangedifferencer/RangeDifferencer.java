@@ -12,8 +12,12 @@ package org.eclipse.compare.rangedifferencer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.eclipse.compare.internal.CompareMessages;
+import org.eclipse.compare.internal.DiffTasks;
 import org.eclipse.compare.internal.LCSSettings;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -104,8 +108,38 @@ public final class RangeDifferencer {
      */
     public static RangeDifference[] findDifferences(IProgressMonitor pm,
             LCSSettings settings, IRangeComparator left, IRangeComparator right) {
+        return findDifferences(pm, settings, (DiffBudget) null, left, right);
+    }
+
+    /**
+     * Finds the differences between two <code>IRangeComparator</code>s
+     * within a budget. When the budget is exhausted, the rest of the
+     * comparators is reported as a single change and the budget is marked as
+     * degraded. The greedy method is bounded by the <code>tooLong</code> and
+     * <code>powLimit</code> settings instead.
+     * 
+     * @param pm
+     *                if not <code>null</code> used to report progress
+     * @param budget
+     *                the budget, or <code>null</code> for no limits
+     * @param left
+     *                the left range comparator
+     * @param right
+     *                the right range comparator
+     * @return an array of range differences, or an empty array if no
+     *         differences were found
+     */
+    public static RangeDifference[] findDifferences(IProgressMonitor pm,
+            LCSSettings settings, DiffBudget budget, IRangeComparator left,
+            IRangeComparator right) {
         if (!settings.isUseGreedyMethod()) {
-            return OldDifferencer.findDifferences(pm, left, right);
+            if (settings.getAlgorithm() == LCSSettings.Algorithm.LINEAR_SPACE_MYERS)
+                return LinearDifferencer.findDifferences(pm, budget, left,
+                        right);
+            if (settings.getAlgorithm() == LCSSettings.Algorithm.HISTOGRAM)
+                return HistogramDifferencer.findDifferences(pm, budget, left,
+                        right);
+            return OldDifferencer.findDifferences(pm, budget, left, right);
         }
         return RangeComparatorLCS.findDifferences(pm, settings, left, right);
     }
@@ -154,18 +188,108 @@ public final class RangeDifferencer {
     public static RangeDifference[] findDifferences(IProgressMonitor pm,
             LCSSettings settings, IRangeComparator ancestor,
             IRangeComparator left, IRangeComparator right) {
+        return findDifferences(pm, settings, (DiffBudget) null, ancestor,
+                left, right);
+    }
+
+    /**
+     * Finds the differences among three <code>IRangeComparator</code>s
+     * within a budget, which is shared by both two-way comparisons with the
+     * ancestor. If the ancestor range comparator is <code>null</code>, a
+     * two-way comparison is performed.
+     * 
+     * @param pm
+     *                if not <code>null</code> used to report progress
+     * @param budget
+     *                the budget, or <code>null</code> for no limits
+     * @param ancestor
+     *                the ancestor range comparator or <code>null</code>
+     * @param left
+     *                the left range comparator
+     * @param right
+     *                the right range comparator
+     * @return an array of range differences, or an empty array if no
+     *         differences were found
+     * @see #findDifferences(IProgressMonitor, LCSSettings, DiffBudget,
+     *      IRangeComparator, IRangeComparator)
+     */
+    public static RangeDifference[] findDifferences(IProgressMonitor pm,
+            LCSSettings settings, DiffBudget budget,
+            IRangeComparator ancestor, IRangeComparator left,
+            IRangeComparator right) {
+        return findDifferences(pm, settings, budget, null, ancestor, left,
+                right);
+    }
+
+    /**
+     * Finds the differences among three <code>IRangeComparator</code>s
+     * within a budget. The comparisons of the ancestor with the right and
+     * with the left comparator are independent, so if an executor is given
+     * the first one is submitted to it while the calling thread computes the
+     * second one. If the executor has not started the task by then, the
+     * calling thread runs it itself, as it does when the executor rejects
+     * the task. The result is the same as without an executor.
+     * <p>
+     * The comparators must allow concurrent comparisons, which is the case
+     * if comparing them does not change their state.
+     * 
+     * @param pm
+     *                if not <code>null</code> used to report progress
+     * @param budget
+     *                the budget, or <code>null</code> for no limits
+     * @param executor
+     *                the executor running one of the two comparisons with
+     *                the ancestor, or <code>null</code> to run both on the
+     *                calling thread
+     * @param ancestor
+     *                the ancestor range comparator or <code>null</code>
+     * @param left
+     *                the left range comparator
+     * @param right
+     *                the right range comparator
+     * @return an array of range differences, or an empty array if no
+     *         differences were found
+     */
+    public static RangeDifference[] findDifferences(IProgressMonitor pm,
+            final LCSSettings settings, final DiffBudget budget,
+            Executor executor, final IRangeComparator ancestor,
+            IRangeComparator left, final IRangeComparator right) {
         try {
             if (ancestor == null)
-                return findDifferences(pm, settings, left, right);
+                return findDifferences(pm, settings, budget, left, right);
             SubMonitor monitor = SubMonitor.convert(pm,
                     CompareMessages.RangeComparatorLCS_0, 100);
             RangeDifference[] leftAncestorScript = null;
-            RangeDifference[] rightAncestorScript = findDifferences(monitor
-                    .newChild(50), settings, ancestor, right);
-            if (rightAncestorScript != null) {
-                monitor.setWorkRemaining(100);
-                leftAncestorScript = findDifferences(monitor.newChild(50),
-                        settings, ancestor, left);
+            RangeDifference[] rightAncestorScript;
+            if (executor == null) {
+                rightAncestorScript = findDifferences(monitor.newChild(50),
+                        settings, budget, ancestor, right);
+                if (rightAncestorScript != null) {
+                    monitor.setWorkRemaining(100);
+                    leftAncestorScript = findDifferences(monitor.newChild(50),
+                            settings, budget, ancestor, left);
+                }
+            } else {
+                // progress monitors are not thread safe, so the task reports
+                // its work when it is done
+                FutureTask<RangeDifference[]> rightTask = new FutureTask<RangeDifference[]>(
+                        new Callable<RangeDifference[]>() {
+                            public RangeDifference[] call() {
+                                return findDifferences((IProgressMonitor) null,
+                                        settings, budget, ancestor, right);
+                            }
+                        });
+                DiffTasks.execute(executor, rightTask);
+                try {
+                    leftAncestorScript = findDifferences(monitor.newChild(50),
+                            settings, budget, ancestor, left);
+                    rightTask.run(); // does nothing if the task was started
+                    rightAncestorScript = DiffTasks.getResult(rightTask);
+                } finally {
+                    // does nothing if the right comparison is done
+                    rightTask.cancel(true);
+                }
+                monitor.worked(50);
             }
             if (rightAncestorScript == null || leftAncestorScript == null)
                 return null;
@@ -478,4 +602,20 @@ public final class RangeDifferencer {
             IRangeComparator b, int bi) {
         return a.rangesEqual(ai, b, bi);
     }
+
+    /*
+     * Returns the tokens of comparator if it shares a token numbering with
+     * other, null if the entities must be compared with rangesEqual
+     */
+    static int[] getTokens(IRangeComparator comparator,
+            IRangeComparator other) {
+        if (!(comparator instanceof ITokenComparator)
+                || !(other instanceof ITokenComparator))
+            return null;
+        int[] tokens = ((ITokenComparator) comparator).getTokens(other);
+        if (tokens == null
+                || ((ITokenComparator) other).getTokens(comparator) == null)
+            return null;
+        return tokens;
+    }
 }
@@ -23,6 +23,8 @@ import org.outerj.daisy.diff.html.HTMLDiffer;
 import org.outerj.daisy.diff.html.HtmlSaxDiffOutput;
 import org.outerj.daisy.diff.html.TextNodeComparator;
 import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
+import org.outerj.daisy.diff.tag.AtomTable;
 import org.outerj.daisy.diff.tag.TagComparator;
 import org.outerj.daisy.diff.tag.TagDiffer;
 import org.outerj.daisy.diff.tag.TagSaxDiffOutput;
@@ -30,10 +32,15 @@ import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
-import org.xml.sax.helpers.XMLReaderFactory;
 
+/**
+ * Compares documents with default settings. A {@link DiffEngine} does the
+ * same with settings of its own and less work per comparison.
+ */
 public class DaisyDiff {
 
+    private static final XMLReaderPool readers = new XMLReaderPool(4);
+
     /**
      * Diffs two html files, outputting the result to the specified consumer.
      */
@@ -41,17 +48,19 @@ public class DaisyDiff {
             ContentHandler consumer, String prefix, Locale locale)
             throws SAXException, IOException {
 
-        DomTreeBuilder oldHandler = new DomTreeBuilder();
-        XMLReader xr1 = XMLReaderFactory.createXMLReader();
-        xr1.setContentHandler(oldHandler);
-        xr1.parse(oldSource);
+        TokenDictionary tokenDictionary = new TokenDictionary();
+
+        DomTreeBuilder oldHandler = new DomTreeBuilder(tokenDictionary);
+        XMLReader xr = readers.acquire();
+        xr.setContentHandler(oldHandler);
+        xr.parse(oldSource);
         TextNodeComparator leftComparator = new TextNodeComparator(oldHandler,
                 locale);
 
-        DomTreeBuilder newHandler = new DomTreeBuilder();
-        XMLReader xr2 = XMLReaderFactory.createXMLReader();
-        xr2.setContentHandler(newHandler);
-        xr2.parse(newSource);
+        DomTreeBuilder newHandler = new DomTreeBuilder(tokenDictionary);
+        xr.setContentHandler(newHandler);
+        xr.parse(newSource);
+        readers.release(xr);
 
         TextNodeComparator rightComparator = new TextNodeComparator(newHandler,
                 locale);
@@ -68,8 +77,9 @@ public class DaisyDiff {
     public static void diffTag(String oldText, String newText,
             ContentHandler consumer) throws Exception {
         consumer.startDocument();
-        TagComparator oldComp = new TagComparator(oldText);
-        TagComparator newComp = new TagComparator(newText);
+        AtomTable atoms = new AtomTable();
+        TagComparator oldComp = new TagComparator(oldText, atoms);
+        TagComparator newComp = new TagComparator(newText, atoms);
 
         TagSaxDiffOutput output = new TagSaxDiffOutput(consumer);
         TagDiffer differ = new TagDiffer(output);
@@ -84,8 +94,9 @@ public class DaisyDiff {
     public static void diffTag(BufferedReader oldText, BufferedReader newText,
             ContentHandler consumer) throws Exception {
 
-        TagComparator oldComp = new TagComparator(oldText);
-        TagComparator newComp = new TagComparator(newText);
+        AtomTable atoms = new AtomTable();
+        TagComparator oldComp = new TagComparator(oldText, atoms);
+        TagComparator newComp = new TagComparator(newText, atoms);
 
         TagSaxDiffOutput output = new TagSaxDiffOutput(consumer);
         TagDiffer differ = new TagDiffer(output);
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import java.util.Locale;
+
+import org.eclipse.compare.internal.LCSSettings;
+
+/**
+ * The settings a {@link DiffEngine} is built from. A configuration can be
+ * changed and reused after building an engine, without affecting it.
+ */
+public class DiffConfiguration {
+
+    private Locale locale = Locale.getDefault();
+
+    private String prefix = "diff";
+
+    private LCSSettings settings = new LCSSettings();
+
+    private boolean cleanup = true;
+
+    private boolean xslCleanup = true;
+
+    private ParsedDocumentCache documentCache = null;
+
+    private DiffResultCache resultCache = null;
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * @param locale - the language of the descriptions of changed text
+     */
+    public void setLocale(Locale locale) {
+        if (locale == null)
+            throw new IllegalArgumentException("The locale is required");
+        this.locale = locale;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @param prefix - the prefix of the ids of the changes in the output
+     */
+    public void setPrefix(String prefix) {
+        if (prefix == null)
+            throw new IllegalArgumentException("The prefix is required");
+        this.prefix = prefix;
+    }
+
+    public LCSSettings getLCSSettings() {
+        return settings;
+    }
+
+    /**
+     * @param settings - the settings of the comparison of the text, copied
+     * by the engine
+     */
+    public void setLCSSettings(LCSSettings settings) {
+        if (settings == null)
+            throw new IllegalArgumentException("The settings are required");
+        this.settings = settings;
+    }
+
+    public boolean isCleanup() {
+        return cleanup;
+    }
+
+    /**
+     * @param cleanup - <code>true</code> to parse the documents as HTML and
+     * clean them up as {@link HtmlCleaner} does, <code>false</code> if they
+     * are well-formed XHTML already. The default is <code>true</code>.
+     */
+    public void setCleanup(boolean cleanup) {
+        this.cleanup = cleanup;
+    }
+
+    public boolean isXslCleanup() {
+        return xslCleanup;
+    }
+
+    /**
+     * @param xslCleanup - <code>true</code> to clean up the documents with
+     * <code>xslfilter/cleanup.xsl</code>, <code>false</code> to clean them
+     * up the same way while they are parsed, which is faster. The default is
+     * <code>true</code>.
+     * @see HtmlCleaner#HtmlCleaner(boolean)
+     */
+    public void setXslCleanup(boolean xslCleanup) {
+        this.xslCleanup = xslCleanup;
+    }
+
+    public ParsedDocumentCache getDocumentCache() {
+        return documentCache;
+    }
+
+    /**
+     * @param documentCache - the cache of the parsed documents, which is
+     * shared rather than copied by the engine, or <code>null</code> to parse
+     * every document. The default is <code>null</code>.
+     */
+    public void setDocumentCache(ParsedDocumentCache documentCache) {
+        this.documentCache = documentCache;
+    }
+
+    public DiffResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * @param resultCache - the cache of the results of HTML diffs, which is
+     * shared rather than copied by the engine, or <code>null</code> to diff
+     * the documents every time. The default is <code>null</code>.
+     */
+    public void setResultCache(DiffResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.xml.transform.TransformerConfigurationException;
+
+import org.eclipse.compare.internal.LCSSettings;
+import org.outerj.daisy.diff.helper.HtmlCleanupHandler;
+import org.outerj.daisy.diff.helper.NekoHtmlParser;
+import org.outerj.daisy.diff.helper.SaxEventRecorder;
+import org.outerj.daisy.diff.html.HTMLDiffer;
+import org.outerj.daisy.diff.html.HtmlSaxDiffOutput;
+import org.outerj.daisy.diff.html.TextNodeComparator;
+import org.outerj.daisy.diff.html.ancestor.tagtostring.TagToStringFactory;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.ParsedDocument;
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
+import org.outerj.daisy.diff.tag.AtomTable;
+import org.outerj.daisy.diff.tag.TagComparator;
+import org.outerj.daisy.diff.tag.TagDiffer;
+import org.outerj.daisy.diff.tag.TagSaxDiffOutput;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Compares documents with the same settings many times, possibly from many
+ * threads at once.
+ * <p>
+ * Unlike the static methods of {@link DaisyDiff}, an engine compiles the
+ * cleanup stylesheet and looks up the messages for its locale when it is
+ * built, and reuses its XML readers. Its settings are copied from a
+ * {@link DiffConfiguration} when it is built and cannot change afterwards.
+ * <p>
+ * With a {@link ParsedDocumentCache}, the documents that are compared again
+ * are not parsed again. With a {@link DiffResultCache}, the result of a diff
+ * that was done before is replayed instead. Their sources are then read in
+ * memory first.
+ */
+public final class DiffEngine {
+
+    private static final String CLEANUP_XSL = "xslfilter/cleanup.xsl";
+
+    // the XML readers kept for documents that need no cleanup
+    private static final int MAX_IDLE_READERS = 16;
+
+    private final Locale locale;
+
+    private final String prefix;
+
+    private final LCSSettings settings;
+
+    private final boolean cleanup;
+
+    private final boolean xslCleanup;
+
+    private final ParsedDocumentCache documentCache;
+
+    private final DiffResultCache resultCache;
+
+    private final NekoHtmlParser htmlParser = new NekoHtmlParser();
+
+    private final XslFilter filter = new XslFilter();
+
+    private final XMLReaderPool readers = new XMLReaderPool(MAX_IDLE_READERS);
+
+    /**
+     * @param configuration - the settings of the engine
+     * @throws IllegalStateException if the cleanup stylesheet cannot be
+     * compiled
+     */
+    public DiffEngine(DiffConfiguration configuration) {
+        locale = configuration.getLocale();
+        prefix = configuration.getPrefix();
+        settings = new LCSSettings(configuration.getLCSSettings());
+        cleanup = configuration.isCleanup();
+        xslCleanup = configuration.isXslCleanup();
+        documentCache = configuration.getDocumentCache();
+        resultCache = configuration.getResultCache();
+
+        if (cleanup && xslCleanup) {
+            try {
+                XslFilter.warmUp(CLEANUP_XSL);
+            } catch (TransformerConfigurationException e) {
+                throw new IllegalStateException("Can't compile "
+                        + CLEANUP_XSL, e);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't read " + CLEANUP_XSL,
+                        e);
+            }
+        }
+        TagToStringFactory.getBundle(locale);
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public boolean isCleanup() {
+        return cleanup;
+    }
+
+    public boolean isXslCleanup() {
+        return xslCleanup;
+    }
+
+    /**
+     * Diffs two html files, outputting the result to the specified consumer.
+     * The consumer only receives the elements of the result, not the start
+     * and end of a document.
+     */
+    public void diffHTML(InputSource oldSource, InputSource newSource,
+            ContentHandler consumer) throws SAXException, IOException {
+        if (resultCache != null) {
+            SourceContent oldContent = SourceContent.read(oldSource);
+            SourceContent newContent = SourceContent.read(newSource);
+            if (oldContent != null && newContent != null) {
+                diffHTML(oldContent, newContent, consumer);
+                return;
+            }
+            // a source without a stream can't be hashed, so it is not cached
+            if (oldContent != null)
+                oldSource = oldContent.toInputSource();
+            if (newContent != null)
+                newSource = newContent.toInputSource();
+        }
+        TokenDictionary tokenDictionary = new TokenDictionary();
+        diff(parse(oldSource, tokenDictionary), parse(newSource,
+                tokenDictionary), consumer);
+    }
+
+    /*
+     * Replays the cached result of the diff of the given documents, diffing
+     * them first if it is not in the cache.
+     */
+    private void diffHTML(SourceContent oldContent, SourceContent newContent,
+            ContentHandler consumer) throws SAXException, IOException {
+        String key = getResultKey(oldContent, newContent);
+        byte[] result = resultCache.get(key);
+        if (result == null) {
+            TokenDictionary tokenDictionary = new TokenDictionary();
+            SaxEventRecorder recorder = new SaxEventRecorder();
+            boolean complete = diff(parse(oldContent, tokenDictionary), parse(
+                    newContent, tokenDictionary), recorder);
+            result = recorder.toByteArray();
+            // a result degraded by the time limit may differ next time
+            if (complete)
+                resultCache.put(key, result);
+        }
+        SaxEventRecorder.replay(result, consumer);
+    }
+
+    /**
+     * @return <code>false</code> if the result was degraded to stay within
+     * the limits of the settings
+     */
+    private boolean diff(TextNodeComparator leftComparator,
+            TextNodeComparator rightComparator, ContentHandler consumer)
+            throws SAXException {
+        HtmlSaxDiffOutput output = new HtmlSaxDiffOutput(consumer, prefix);
+        HTMLDiffer differ = new HTMLDiffer(output, settings);
+        differ.diff(leftComparator, rightComparator);
+        return !differ.isDegraded();
+    }
+
+    /*
+     * Builds a key from the documents and every setting that changes the
+     * result. The prefix comes last since it may contain any character.
+     */
+    private String getResultKey(SourceContent oldContent,
+            SourceContent newContent) {
+        return (cleanup ? "html|" : "xml|") + oldContent.getHash() + "|"
+                + newContent.getHash() + "|" + locale + "|"
+                + settings.getAlgorithm() + "|" + settings.getTooLong() + "|"
+                + settings.getPowLimit() + "|" + settings.isUseGreedyMethod()
+                + "|" + settings.getTimeLimit() + "|"
+                + settings.getMaxEditDistance() + "|" + prefix;
+    }
+
+    /**
+     * Diffs two html files word for word as source, outputting the result to
+     * the specified consumer.
+     */
+    public void diffTag(String oldText, String newText,
+            ContentHandler consumer) throws Exception {
+        consumer.startDocument();
+        AtomTable atoms = new AtomTable();
+        TagComparator oldComp = new TagComparator(oldText, atoms);
+        TagComparator newComp = new TagComparator(newText, atoms);
+
+        TagSaxDiffOutput output = new TagSaxDiffOutput(consumer);
+        TagDiffer differ = new TagDiffer(output, settings);
+        differ.diff(oldComp, newComp);
+        consumer.endDocument();
+    }
+
+    private TextNodeComparator parse(InputSource source,
+            TokenDictionary tokenDictionary) throws SAXException, IOException {
+        if (documentCache != null) {
+            SourceContent content = SourceContent.read(source);
+            if (content != null)
+                return parse(content, tokenDictionary);
+        }
+        DomTreeBuilder handler = new DomTreeBuilder(tokenDictionary);
+        build(source, handler);
+        return new TextNodeComparator(handler, locale);
+    }
+
+    private TextNodeComparator parse(SourceContent content,
+            TokenDictionary tokenDictionary) throws SAXException, IOException {
+        if (documentCache != null) {
+            ParsedDocument document = getDocument(content);
+            return new TextNodeComparator(document.newTree(tokenDictionary),
+                    locale);
+        }
+        DomTreeBuilder handler = new DomTreeBuilder(tokenDictionary);
+        build(content.toInputSource(), handler);
+        return new TextNodeComparator(handler, locale);
+    }
+
+    /*
+     * Returns the cached document with the given content, parsing it if it
+     * is not in the cache. Both cleanups give the same document.
+     */
+    private ParsedDocument getDocument(SourceContent content)
+            throws SAXException, IOException {
+        String key = (cleanup ? "html:" : "xml:") + content.getHash();
+        ParsedDocument document = documentCache.get(key);
+        if (document == null) {
+            // the words are interned by the document itself
+            DomTreeBuilder handler = new DomTreeBuilder(null);
+            build(content.toInputSource(), handler);
+            document = new ParsedDocument(handler);
+            documentCache.put(key, document);
+        }
+        return document;
+    }
+
+    private void build(InputSource source, DomTreeBuilder handler)
+            throws SAXException, IOException {
+        if (cleanup && xslCleanup) {
+            htmlParser.parse(source, filter.xsl(handler, CLEANUP_XSL));
+        } else if (cleanup) {
+            htmlParser.parse(source, new HtmlCleanupHandler(handler));
+        } else {
+            XMLReader reader = readers.acquire();
+            reader.setContentHandler(handler);
+            reader.parse(source);
+            readers.release(reader);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+/**
+ * Stores the results of HTML diffs, recorded by a
+ * {@link org.outerj.daisy.diff.helper.SaxEventRecorder}, so a
+ * {@link DiffEngine} does not compare the same documents with the same
+ * settings twice.
+ * <p>
+ * The keys are built by the engine from the hashes of both documents and all
+ * the settings that change the result. A cache must be thread-safe. It may
+ * drop results at any time, and should not fail the diff when it cannot
+ * store or read one.
+ * @see MemoryDiffResultCache
+ * @see FileDiffResultCache
+ */
+public interface DiffResultCache {
+
+    /**
+     * @return the result stored with the given key, or <code>null</code>
+     */
+    public byte[] get(String key);
+
+    /**
+     * Stores a result. The array must not be changed afterwards.
+     */
+    public void put(String key, byte[] result);
+
+    /**
+     * @return the counts of the lookups in this cache
+     */
+    public CacheStatistics getStatistics();
+
+}
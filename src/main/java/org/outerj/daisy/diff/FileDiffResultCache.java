@@ -0,0 +1,136 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Keeps diff results in files of a local directory, so they survive a
+ * restart. The directory can be shared by several processes.
+ * <p>
+ * Every result is written to a temporary file that is then renamed, so a
+ * result is never read while it is written. Results that cannot be read or
+ * written are counted as errors and treated as missing. Nothing is ever
+ * removed from the directory by the cache.
+ */
+public class FileDiffResultCache implements DiffResultCache {
+
+    private static final int MAGIC = 0x44445201;
+
+    private static final String SUFFIX = ".diff";
+
+    private final File directory;
+
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    /**
+     * @param directory - the directory of the results, created if needed
+     * @throws IllegalArgumentException if the directory cannot be created
+     */
+    public FileDiffResultCache(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IllegalArgumentException("Can't create " + directory);
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public byte[] get(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            statistics.recordMiss();
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                // the key is stored as well, in case two keys have the same hash
+                if (in.readInt() != MAGIC || !key.equals(in.readUTF())) {
+                    statistics.recordMiss();
+                    return null;
+                }
+                // a damaged file must not make us allocate any amount
+                int length = in.readInt();
+                if (length < 0 || length > file.length())
+                    throw new IOException("Damaged result in " + file);
+                byte[] result = new byte[length];
+                in.readFully(result);
+                statistics.recordHit();
+                return result;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            statistics.recordError();
+            statistics.recordMiss();
+            return null;
+        }
+    }
+
+    public void put(String key, byte[] result) {
+        File file = getFile(key);
+        File temporary = null;
+        try {
+            temporary = File.createTempFile("result", ".tmp", directory);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporary)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeUTF(key);
+                out.writeInt(result.length);
+                out.write(result);
+            } finally {
+                out.close();
+            }
+            // renaming over an existing file fails on some platforms
+            if (!temporary.renameTo(file)
+                    && !(file.delete() && temporary.renameTo(file)))
+                throw new IOException("Can't rename " + temporary + " to "
+                        + file);
+            temporary = null;
+        } catch (IOException e) {
+            statistics.recordError();
+        } finally {
+            if (temporary != null)
+                temporary.delete();
+        }
+    }
+
+    private File getFile(String key) {
+        try {
+            return new File(directory, SourceContent.toHex(SourceContent
+                    .newDigest().digest(key.getBytes("UTF-8")))
+                    + SUFFIX);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -18,11 +18,18 @@ package org.outerj.daisy.diff;
 
 import java.io.IOException;
 
+import org.outerj.daisy.diff.helper.HtmlCleanupHandler;
 import org.outerj.daisy.diff.helper.NekoHtmlParser;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+/**
+ * Parses HTML documents and keeps only the content of their body, without
+ * scripts. The cleanup is done by <code>xslfilter/cleanup.xsl</code> or, with
+ * the same result but without an XSLT processor, by a
+ * {@link HtmlCleanupHandler}.
+ */
 public class HtmlCleaner {
 
     private NekoHtmlParser parser;
@@ -30,14 +37,26 @@ public class HtmlCleaner {
     private XslFilter filter;
 
     public HtmlCleaner() {
+        this(true);
+    }
+
+    /**
+     * @param useXsl - <code>true</code> to clean up with the stylesheet,
+     * <code>false</code> to clean up while parsing
+     */
+    public HtmlCleaner(boolean useXsl) {
         this.parser = new NekoHtmlParser();
-        this.filter = new XslFilter();
+        this.filter = useXsl ? new XslFilter() : null;
     }
 
     public void cleanAndParse(InputSource source, ContentHandler consumer)
             throws IOException, SAXException {
-        ContentHandler cleanupFilter = filter.xsl(consumer,
-                "xslfilter/cleanup.xsl");
+        ContentHandler cleanupFilter;
+        if (filter != null) {
+            cleanupFilter = filter.xsl(consumer, "xslfilter/cleanup.xsl");
+        } else {
+            cleanupFilter = new HtmlCleanupHandler(consumer);
+        }
         parser.parse(source, cleanupFilter);
     }
 
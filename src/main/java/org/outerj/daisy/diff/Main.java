@@ -8,17 +8,12 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Locale;
 
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 
-import org.outerj.daisy.diff.html.HTMLDiffer;
-import org.outerj.daisy.diff.html.HtmlSaxDiffOutput;
-import org.outerj.daisy.diff.html.TextNodeComparator;
-import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -120,37 +115,19 @@ public class Main {
                 ContentHandler postProcess = htmlOut? filter.xsl(result,
                         "xslfilter/htmlheader.xsl"):result;
 
-                Locale locale = Locale.getDefault();
-                String prefix = "diff";
-
-                HtmlCleaner cleaner = new HtmlCleaner();
+                DiffEngine engine = new DiffEngine(new DiffConfiguration());
 
                 InputSource oldSource = new InputSource(oldStream);
                 InputSource newSource = new InputSource(newStream);
 
-                DomTreeBuilder oldHandler = new DomTreeBuilder();
-                cleaner.cleanAndParse(oldSource, oldHandler);
-                System.out.print(".");
-                TextNodeComparator leftComparator = new TextNodeComparator(
-                        oldHandler, locale);
-
-                DomTreeBuilder newHandler = new DomTreeBuilder();
-                cleaner.cleanAndParse(newSource, newHandler);
-                System.out.print(".");
-                TextNodeComparator rightComparator = new TextNodeComparator(
-                        newHandler, locale);
-
                 postProcess.startDocument();
                 postProcess.startElement("", "diffreport", "diffreport",
                         new AttributesImpl());
                 doCSS(css, postProcess);
                 postProcess.startElement("", "diff", "diff",
                         new AttributesImpl());
-                HtmlSaxDiffOutput output = new HtmlSaxDiffOutput(postProcess,
-                        prefix);
 
-                HTMLDiffer differ = new HTMLDiffer(output);
-                differ.diff(leftComparator, rightComparator);
+                engine.diffHTML(oldSource, newSource, postProcess);
                 System.out.print(".");
                 postProcess.endElement("", "diff", "diff");
                 postProcess.endElement("", "diffreport", "diffreport");
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps diff results in memory. The results used the least recently are
+ * dropped when their total size exceeds a bound.
+ * <p>
+ * The cache can be put in front of a slower one, such as a
+ * {@link FileDiffResultCache}. Results are then stored in both, and results
+ * found in the slower cache are kept in memory as well.
+ */
+public class MemoryDiffResultCache implements DiffResultCache {
+
+    // the size of an entry besides the result
+    private static final int ENTRY_SIZE = 64;
+
+    private final long maxSize;
+
+    private final DiffResultCache next;
+
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    private long size = 0;
+
+    private final LinkedHashMap<String, byte[]> results = new LinkedHashMap<String, byte[]>(
+            16, 0.75f, true);
+
+    /**
+     * @param maxSize - the number of bytes the results may take together
+     */
+    public MemoryDiffResultCache(long maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param maxSize - the number of bytes the results may take together
+     * @param next - the cache to look in for the results that are not in
+     * memory, or <code>null</code>
+     */
+    public MemoryDiffResultCache(long maxSize, DiffResultCache next) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("The size can't be negative");
+        this.maxSize = maxSize;
+        this.next = next;
+    }
+
+    public byte[] get(String key) {
+        byte[] result;
+        synchronized (this) {
+            result = results.get(key);
+        }
+        if (result != null) {
+            statistics.recordHit();
+            return result;
+        }
+        statistics.recordMiss();
+
+        if (next != null) {
+            result = next.get(key);
+            if (result != null)
+                store(key, result);
+        }
+        return result;
+    }
+
+    public void put(String key, byte[] result) {
+        store(key, result);
+        if (next != null)
+            next.put(key, result);
+    }
+
+    private synchronized void store(String key, byte[] result) {
+        if (sizeOf(key, result) > maxSize)
+            return;
+        byte[] previous = results.put(key, result);
+        if (previous != null)
+            size -= sizeOf(key, previous);
+        size += sizeOf(key, result);
+
+        Iterator<Map.Entry<String, byte[]>> eldest = results
+                .entrySet().iterator();
+        while (size > maxSize) {
+            Map.Entry<String, byte[]> entry = eldest.next();
+            size -= sizeOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long sizeOf(String key, byte[] result) {
+        return ENTRY_SIZE + 2 * key.length() + result.length;
+    }
+
+    /**
+     * @return the counts of the lookups in memory
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the number of results in memory
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * @return the number of bytes taken by the results in memory
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Drops the results kept in memory, but not those of the next cache.
+     */
+    public synchronized void clear() {
+        results.clear();
+        size = 0;
+    }
+}
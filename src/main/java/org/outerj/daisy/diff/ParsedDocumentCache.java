@@ -0,0 +1,96 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.outerj.daisy.diff.html.dom.ParsedDocument;
+
+/**
+ * Keeps parsed documents by the hash of their content, so a document that is
+ * compared again is not parsed and cleaned up again. The documents used the
+ * least recently are dropped when their estimated size exceeds a bound.
+ * <p>
+ * A cache can be shared by several {@link DiffEngine}s, see
+ * {@link DiffConfiguration#setDocumentCache(ParsedDocumentCache)}. It is
+ * thread-safe.
+ */
+public class ParsedDocumentCache {
+
+    private final long maxRetainedSize;
+
+    private long retainedSize = 0;
+
+    private final LinkedHashMap<String, ParsedDocument> documents = new LinkedHashMap<String, ParsedDocument>(
+            16, 0.75f, true);
+
+    /**
+     * @param maxRetainedSize - the estimated number of bytes the documents
+     * may keep alive together
+     */
+    public ParsedDocumentCache(long maxRetainedSize) {
+        if (maxRetainedSize < 0)
+            throw new IllegalArgumentException("The size can't be negative");
+        this.maxRetainedSize = maxRetainedSize;
+    }
+
+    /**
+     * @return the document stored with the given key, or <code>null</code>
+     */
+    public synchronized ParsedDocument get(String key) {
+        return documents.get(key);
+    }
+
+    /**
+     * Stores a document, dropping the least recently used ones until all
+     * documents fit. A document that is bigger than the whole cache is not
+     * stored.
+     */
+    public synchronized void put(String key, ParsedDocument document) {
+        if (document.getRetainedSize() > maxRetainedSize)
+            return;
+        ParsedDocument previous = documents.put(key, document);
+        if (previous != null)
+            retainedSize -= previous.getRetainedSize();
+        retainedSize += document.getRetainedSize();
+
+        Iterator<ParsedDocument> eldest = documents.values().iterator();
+        while (retainedSize > maxRetainedSize) {
+            retainedSize -= eldest.next().getRetainedSize();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return the number of documents in the cache
+     */
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    /**
+     * @return the estimated number of bytes kept alive by the documents
+     */
+    public synchronized long getRetainedSize() {
+        return retainedSize;
+    }
+
+    public synchronized void clear() {
+        documents.clear();
+        retainedSize = 0;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.xml.sax.InputSource;
+
+/**
+ * The content of an {@link InputSource}, read in memory so it can be hashed
+ * and still be parsed afterwards.
+ */
+final class SourceContent {
+
+    private final InputSource source;
+
+    private final char[] chars;
+
+    private final byte[] bytes;
+
+    private String hash;
+
+    private SourceContent(InputSource source, char[] chars, byte[] bytes) {
+        this.source = source;
+        this.chars = chars;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Reads and closes the stream of the given source.
+     * @return the content of the source, or <code>null</code> if it has no
+     * stream and would be read from its system id
+     */
+    static SourceContent read(InputSource source) throws IOException {
+        Reader reader = source.getCharacterStream();
+        if (reader != null) {
+            CharArrayWriter content = new CharArrayWriter();
+            char[] buffer = new char[8192];
+            try {
+                int length;
+                while ((length = reader.read(buffer)) != -1) {
+                    content.write(buffer, 0, length);
+                }
+            } finally {
+                reader.close();
+            }
+            return new SourceContent(source, content.toCharArray(), null);
+        }
+
+        InputStream in = source.getByteStream();
+        if (in != null) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            try {
+                int length;
+                while ((length = in.read(buffer)) != -1) {
+                    content.write(buffer, 0, length);
+                }
+            } finally {
+                in.close();
+            }
+            return new SourceContent(source, null, content.toByteArray());
+        }
+        return null;
+    }
+
+    /**
+     * @return a new source with the same content and ids as the one that was
+     * read
+     */
+    InputSource toInputSource() {
+        InputSource result = new InputSource(source.getSystemId());
+        result.setPublicId(source.getPublicId());
+        if (chars != null) {
+            result.setCharacterStream(new CharArrayReader(chars));
+        } else {
+            result.setByteStream(new ByteArrayInputStream(bytes));
+            result.setEncoding(source.getEncoding());
+        }
+        return result;
+    }
+
+    /**
+     * @return the SHA-256 hash of the content in hexadecimal. Bytes are
+     * hashed along with their declared encoding, characters as UTF-16.
+     */
+    String getHash() {
+        if (hash != null)
+            return hash;
+        MessageDigest digest = newDigest();
+        if (chars != null) {
+            digest.update((byte) 'c');
+            byte[] buffer = new byte[2 * Math.min(chars.length, 4096)];
+            for (int start = 0; start < chars.length; start += buffer.length / 2) {
+                int end = Math.min(chars.length, start + buffer.length / 2);
+                for (int i = start; i < end; i++) {
+                    buffer[2 * (i - start)] = (byte) (chars[i] >> 8);
+                    buffer[2 * (i - start) + 1] = (byte) chars[i];
+                }
+                digest.update(buffer, 0, 2 * (end - start));
+            }
+        } else {
+            digest.update((byte) 'b');
+            String encoding = source.getEncoding();
+            if (encoding != null) {
+                for (int i = 0; i < encoding.length(); i++) {
+                    digest.update((byte) encoding.charAt(i));
+                }
+            }
+            digest.update((byte) 0);
+            digest.update(bytes);
+        }
+        hash = toHex(digest.digest());
+        return hash;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
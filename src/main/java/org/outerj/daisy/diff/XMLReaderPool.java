@@ -0,0 +1,71 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * Keeps XML readers to reuse, since creating one looks up the SAX
+ * implementation every time. A reader is used by one thread at a time.
+ */
+class XMLReaderPool {
+
+    private static final DefaultHandler NO_HANDLER = new DefaultHandler();
+
+    private final ConcurrentLinkedQueue<XMLReader> readers = new ConcurrentLinkedQueue<XMLReader>();
+
+    private final AtomicInteger nbIdle = new AtomicInteger();
+
+    private final int maxIdle;
+
+    /**
+     * @param maxIdle - the number of readers kept when they are not used
+     */
+    XMLReaderPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * @return an idle reader, or a new one if none is left
+     */
+    XMLReader acquire() throws SAXException {
+        XMLReader reader = readers.poll();
+        if (reader == null)
+            return XMLReaderFactory.createXMLReader();
+        nbIdle.decrementAndGet();
+        return reader;
+    }
+
+    /**
+     * Keeps a reader that parsed its document without errors for later
+     * use, unless enough readers are idle.
+     */
+    void release(XMLReader reader) {
+        // do not keep the consumer of the last document alive
+        reader.setContentHandler(NO_HANDLER);
+        if (nbIdle.incrementAndGet() <= maxIdle) {
+            readers.offer(reader);
+        } else {
+            nbIdle.decrementAndGet();
+        }
+    }
+}
@@ -16,6 +16,9 @@
 package org.outerj.daisy.diff;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
@@ -28,24 +31,39 @@ import javax.xml.transform.stream.StreamSource;
 
 import org.xml.sax.ContentHandler;
 
+/**
+ * Applies the stylesheets on the class path to SAX events.
+ * <p>
+ * Every stylesheet is compiled once, when it is first used or by
+ * {@link #warmUp(String...)}, and shared by all filters in all threads, so
+ * applying it only creates a transformer.
+ */
 public class XslFilter {
 
+    /**
+     * The stylesheets DaisyDiff itself uses.
+     */
+    public static final String[] STYLESHEETS = { "xslfilter/cleanup.xsl",
+            "xslfilter/htmlheader.xsl", "xslfilter/tagheader.xsl" };
+
+    private static final ConcurrentMap<String, Templates> templatesByPath = new ConcurrentHashMap<String, Templates>();
+
+    // transformer factories are not thread-safe, so every thread has its own
+    private static final ThreadLocal<SAXTransformerFactory> factories = new ThreadLocal<SAXTransformerFactory>() {
+        @Override
+        protected SAXTransformerFactory initialValue() {
+            return (SAXTransformerFactory) TransformerFactory.newInstance();
+        }
+    };
+
     public ContentHandler xsl(ContentHandler consumer, String xslPath)
             throws IOException {
 
         try {
-            // Create transformer factory
-            TransformerFactory factory = TransformerFactory.newInstance();
-
-            // Use the factory to create a template containing the xsl file
-            Templates template = factory.newTemplates(new StreamSource(
-                    getClass().getClassLoader().getResourceAsStream(xslPath)));
+            Templates template = getTemplates(xslPath);
 
             // Use the template to create a transformer
-            TransformerFactory transFact = TransformerFactory.newInstance();
-            SAXTransformerFactory saxTransFact = (SAXTransformerFactory) transFact;
-            // create a ContentHandler
-            TransformerHandler transHand = saxTransFact
+            TransformerHandler transHand = factories.get()
                     .newTransformerHandler(template);
 
             transHand.setResult(new SAXResult(consumer));
@@ -63,4 +81,50 @@ public class XslFilter {
 
     }
 
+    /**
+     * Returns the compiled stylesheet, compiling it if this is its first use.
+     * @param xslPath - the path of the stylesheet on the class path
+     * @return the thread-safe compiled stylesheet
+     * @throws IllegalArgumentException if there is no such stylesheet
+     */
+    public static Templates getTemplates(String xslPath)
+            throws TransformerConfigurationException, IOException {
+        Templates templates = templatesByPath.get(xslPath);
+        if (templates != null)
+            return templates;
+
+        // only makes a stylesheet be compiled once
+        synchronized (XslFilter.class) {
+            templates = templatesByPath.get(xslPath);
+            if (templates == null) {
+                InputStream in = XslFilter.class.getClassLoader()
+                        .getResourceAsStream(xslPath);
+                if (in == null)
+                    throw new IllegalArgumentException("No stylesheet "
+                            + xslPath);
+                try {
+                    templates = factories.get().newTemplates(
+                            new StreamSource(in));
+                } finally {
+                    in.close();
+                }
+                templatesByPath.put(xslPath, templates);
+            }
+            return templates;
+        }
+    }
+
+    /**
+     * Compiles stylesheets ahead of their first use, such as when an
+     * application starts.
+     * @param xslPaths - the paths of the stylesheets on the class path, or
+     * none for the {@link #STYLESHEETS} of DaisyDiff
+     */
+    public static void warmUp(String... xslPaths)
+            throws TransformerConfigurationException, IOException {
+        for (String xslPath : xslPaths.length > 0 ? xslPaths : STYLESHEETS) {
+            getTemplates(xslPath);
+        }
+    }
+
 }
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.helper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Records SAX events and replays them later, like a {@link SaxBuffer}, in a
+ * fraction of the memory.
+ * <p>
+ * The events are recorded in the format of a {@link SaxEventRecorder}, so
+ * no object is kept per event. When a spill threshold is given, the bytes of
+ * the recording beyond it are written to a temporary file, which is
+ * memory-mapped to replay them. {@link #recycle()} and {@link #close()}
+ * delete that file.
+ * <p>
+ * Like a SaxBuffer, a buffer is not thread-safe.
+ */
+public class CompactSaxBuffer extends SaxEventRecorder implements Closeable {
+
+    // the number of bytes of the temporary file mapped at once
+    private static final int WINDOW_SIZE = 1 << 26;
+
+    private final int spillThreshold;
+
+    private File file;
+
+    private FileChannel channel;
+
+    // the number of bytes in the file, which come before those in memory
+    private long fileLength = 0;
+
+    // the files that could not be deleted yet
+    private final List<File> undeletedFiles = new ArrayList<File>();
+
+    /**
+     * Creates a buffer that keeps all the events in memory.
+     */
+    public CompactSaxBuffer() {
+        this(0);
+    }
+
+    /**
+     * @param spillThreshold - the number of bytes of recorded events kept in
+     * memory before they are written to a temporary file, or 0 to keep all
+     * the events in memory
+     */
+    public CompactSaxBuffer(int spillThreshold) {
+        if (spillThreshold < 0)
+            throw new IllegalArgumentException(
+                    "The threshold can't be negative");
+        this.spillThreshold = spillThreshold;
+    }
+
+    public boolean isEmpty() {
+        // only the magic number was written
+        return fileLength == 0 && length == 4;
+    }
+
+    /**
+     * @return <code>true</code> if some events were written to a temporary
+     * file
+     */
+    public boolean isSpilled() {
+        return channel != null;
+    }
+
+    /**
+     * Sends the recorded events to the given handler. Lexical events are only
+     * sent if it is a {@link LexicalHandler}.
+     */
+    public void toSAX(ContentHandler contentHandler) throws SAXException {
+        new SpilledReplay().send(contentHandler);
+    }
+
+    /**
+     * @return the recorded events, including those written to the file
+     */
+    @Override
+    public byte[] toByteArray() {
+        if (channel == null)
+            return super.toByteArray();
+        if (fileLength + length > Integer.MAX_VALUE)
+            throw new IllegalStateException("The recording is too long");
+        byte[] recording = new byte[(int) fileLength + length];
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(recording, 0, (int) fileLength);
+            channel.position(0);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    throw new IOException("The file is shorter than written");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read the events from "
+                    + file, e);
+        }
+        System.arraycopy(bytes, 0, recording, (int) fileLength, length);
+        return recording;
+    }
+
+    /**
+     * @return the text of all characters events
+     */
+    @Override
+    public String toString() {
+        final StringBuilder value = new StringBuilder();
+        try {
+            toSAX(new DefaultLexicalHandler() {
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    value.append(ch, start, length);
+                }
+            });
+        } catch (SAXException e) {
+            throw new IllegalStateException(e);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Forgets all events and deletes the temporary file, if any. A file that
+     * cannot be deleted yet, for instance because it is still mapped, is
+     * deleted by a later call.
+     */
+    public void recycle() {
+        reset();
+        fileLength = 0;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            channel = null;
+            undeletedFiles.add(file);
+            file = null;
+        }
+        for (Iterator<File> i = undeletedFiles.iterator(); i.hasNext();) {
+            File undeleted = i.next();
+            // a mapped file may only be deleted once it is unmapped
+            if (undeleted.delete() || !undeleted.exists())
+                i.remove();
+        }
+    }
+
+    /**
+     * Forgets all events and deletes the temporary files.
+     * @throws IOException if a file cannot be deleted yet, in which case
+     * closing again retries
+     */
+    public void close() throws IOException {
+        recycle();
+        if (!undeletedFiles.isEmpty())
+            throw new IOException("Can't delete " + undeletedFiles);
+    }
+
+    /**
+     * Writes the events in the same format as {@link SaxBuffer#dump(Writer)}.
+     */
+    public void dump(Writer writer) throws IOException {
+        try {
+            toSAX(new Dumper(writer));
+        } catch (SAXException e) {
+            if (e.getException() instanceof IOException)
+                throw (IOException) e.getException();
+            throw new IllegalStateException(e);
+        }
+        writer.flush();
+    }
+
+    /*
+     * Appends the bytes to the temporary file, creating it if needed, once
+     * the threshold is reached.
+     */
+    @Override
+    boolean spill(byte[] bytes, int length) throws SAXException {
+        if (spillThreshold == 0 || length < spillThreshold)
+            return false;
+        try {
+            if (channel == null) {
+                file = File.createTempFile("saxbuffer", ".bin");
+                channel = new RandomAccessFile(file, "rw").getChannel();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            channel.position(fileLength);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new SAXException("Can't write the events to " + file, e);
+        }
+        fileLength += length;
+        return true;
+    }
+
+    /*
+     * Reads the bytes in the file through a mapped window, then those in
+     * memory.
+     */
+    private class SpilledReplay extends Replay {
+
+        private long filePosition = 0;
+
+        private ByteBuffer window;
+
+        private byte[] chunk;
+
+        private boolean inMemory;
+
+        SpilledReplay() {
+            super(CompactSaxBuffer.this.bytes, 0);
+            if (channel == null) {
+                limit = length;
+                inMemory = true;
+            } else {
+                chunk = new byte[8192];
+            }
+        }
+
+        @Override
+        boolean fill() throws SAXException {
+            if (inMemory)
+                return false;
+            if (filePosition == fileLength) {
+                bytes = CompactSaxBuffer.this.bytes;
+                position = 0;
+                limit = length;
+                inMemory = true;
+                return limit > 0;
+            }
+            if (window == null || !window.hasRemaining()) {
+                try {
+                    window = channel.map(FileChannel.MapMode.READ_ONLY,
+                            filePosition, Math.min(WINDOW_SIZE, fileLength
+                                    - filePosition));
+                } catch (IOException e) {
+                    throw new SAXException("Can't read the events from "
+                            + file, e);
+                }
+            }
+            int size = Math.min(chunk.length, window.remaining());
+            window.get(chunk, 0, size);
+            filePosition += size;
+            bytes = chunk;
+            position = 0;
+            limit = size;
+            return true;
+        }
+    }
+
+    /*
+     * Receives every event, to override some of them.
+     */
+    private static class DefaultLexicalHandler extends DefaultHandler
+            implements LexicalHandler {
+
+        public void startDTD(String name, String publicId, String systemId)
+                throws SAXException {
+        }
+
+        public void endDTD() throws SAXException {
+        }
+
+        public void startEntity(String name) throws SAXException {
+        }
+
+        public void endEntity(String name) throws SAXException {
+        }
+
+        public void startCDATA() throws SAXException {
+        }
+
+        public void endCDATA() throws SAXException {
+        }
+
+        public void comment(char[] ch, int start, int length)
+                throws SAXException {
+        }
+    }
+
+    /*
+     * Writes the events as the bits of a SaxBuffer do.
+     */
+    private static class Dumper extends DefaultLexicalHandler {
+
+        private final Writer writer;
+
+        Dumper(Writer writer) {
+            this.writer = writer;
+        }
+
+        private void write(String line) throws SAXException {
+            try {
+                writer.write(line);
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            write("[StartDocument]");
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            write("[EndDocument]");
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                Attributes attrs) throws SAXException {
+            write("[StartElement] namespaceURI=" + uri + ",localName="
+                    + localName + ",qName=" + qName);
+            for (int i = 0; i < attrs.getLength(); i++) {
+                write("      [Attribute] namespaceURI=" + attrs.getURI(i)
+                        + ",localName=" + attrs.getLocalName(i) + ",qName="
+                        + attrs.getQName(i) + ",type=" + attrs.getType(i)
+                        + ",value=" + attrs.getValue(i));
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+                throws SAXException {
+            write("[EndElement] namespaceURI=" + uri + ",localName="
+                    + localName + ",qName=" + qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+                throws SAXException {
+            write("[Characters] ch=" + new String(ch, start, length));
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length)
+                throws SAXException {
+            // sic, as written by SaxBuffer
+            write("IgnorableWhitespace] ch=" + new String(ch, start, length));
+        }
+
+        @Override
+        public void processingInstruction(String target, String data)
+                throws SAXException {
+            write("[ProcessingInstruction] target=" + target + ",data="
+                    + data);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri)
+                throws SAXException {
+            write("[StartPrefixMapping] prefix=" + prefix + ",uri=" + uri);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            write("[EndPrefixMapping] prefix=" + prefix);
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            write("[SkippedEntity] name=" + name);
+        }
+
+        @Override
+        public void startDTD(String name, String publicId, String systemId)
+                throws SAXException {
+            write("[StartDTD] name=" + name + ",publicId=" + publicId
+                    + ",systemId=" + systemId);
+        }
+
+        @Override
+        public void endDTD() throws SAXException {
+            write("[EndDTD]");
+        }
+
+        @Override
+        public void startEntity(String name) throws SAXException {
+            write("[StartEntity] name=" + name);
+        }
+
+        @Override
+        public void endEntity(String name) throws SAXException {
+            write("[EndEntity] name=" + name);
+        }
+
+        @Override
+        public void startCDATA() throws SAXException {
+            write("[StartCDATA]");
+        }
+
+        @Override
+        public void endCDATA() throws SAXException {
+            write("[EndCDATA]");
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length)
+                throws SAXException {
+            write("[Comment] ch=" + new String(ch, start, length));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * A ContentHandler that cleans up documents the way
+ * <code>xslfilter/cleanup.xsl</code> does, while they are parsed.
+ * <p>
+ * Only the content of the body is kept, in a new
+ * <code>html/head/body</code> document. Scripts are removed,
+ * <code>noscript</code> elements are replaced by their content, attributes
+ * whose name starts with <code>on</code> or whose value starts with
+ * <code>javascript:</code> are removed and all names lose their prefix.
+ * Comments and processing instructions are dropped.
+ */
+public class HtmlCleanupHandler implements ContentHandler {
+
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+    private final ContentHandler consumer;
+
+    // the depth of the current element of the input
+    private int depth = 0;
+
+    // the depth of the body whose content is copied, or 0
+    private int bodyDepth = 0;
+
+    // the depth of the script being removed, or 0
+    private int scriptDepth = 0;
+
+    private boolean htmlRoot = false;
+
+    // the names of the elements copied from inside the body, null for the
+    // noscript elements that were replaced by their content
+    private final List<String> openElements = new ArrayList<String>();
+
+    // like an XSLT processor, the start of the last element is only written
+    // when its content starts, since a noscript element can still add
+    // attributes to it
+    private String pendingName = null;
+
+    private final AttributesImpl pendingAttributes = new AttributesImpl();
+
+    public HtmlCleanupHandler(ContentHandler consumer) {
+        this.consumer = consumer;
+    }
+
+    public void startDocument() throws SAXException {
+        consumer.startDocument();
+        consumer.startElement("", "html", "html", NO_ATTRIBUTES);
+        consumer.startElement("", "head", "head", NO_ATTRIBUTES);
+        consumer.endElement("", "head", "head");
+        pendingName = "body";
+    }
+
+    public void endDocument() throws SAXException {
+        flushStartElement();
+        consumer.endElement("", "body", "body");
+        consumer.endElement("", "html", "html");
+        consumer.endDocument();
+    }
+
+    public void startElement(String uri, String localName, String qName,
+            Attributes atts) throws SAXException {
+        depth++;
+        String name = getLocalName(localName, qName);
+        if (depth == 1) {
+            htmlRoot = name.equals("html");
+        } else if (depth == 2) {
+            if (htmlRoot && name.equals("body"))
+                bodyDepth = depth;
+        } else if (bodyDepth > 0 && scriptDepth == 0) {
+            if (name.equals("script")) {
+                scriptDepth = depth;
+            } else if (name.equals("noscript")) {
+                openElements.add(null);
+                if (pendingName != null)
+                    addAttributes(atts);
+            } else {
+                flushStartElement();
+                openElements.add(name);
+                pendingName = name;
+                addAttributes(atts);
+            }
+        }
+    }
+
+    public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+        if (scriptDepth == depth) {
+            scriptDepth = 0;
+        } else if (bodyDepth == depth) {
+            bodyDepth = 0;
+        } else if (bodyDepth > 0 && scriptDepth == 0) {
+            String name = openElements.remove(openElements.size() - 1);
+            if (name != null) {
+                flushStartElement();
+                consumer.endElement("", name, name);
+            }
+        }
+        depth--;
+    }
+
+    public void characters(char[] ch, int start, int length)
+            throws SAXException {
+        if (bodyDepth > 0 && scriptDepth == 0 && length > 0) {
+            flushStartElement();
+            consumer.characters(ch, start, length);
+        }
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length)
+            throws SAXException {
+        characters(ch, start, length);
+    }
+
+    public void setDocumentLocator(Locator locator) {
+        // dropped on purpose
+    }
+
+    public void processingInstruction(String target, String data)
+            throws SAXException {
+        // dropped on purpose
+    }
+
+    public void skippedEntity(String name) throws SAXException {
+        // dropped on purpose
+    }
+
+    public void startPrefixMapping(String prefix, String uri)
+            throws SAXException {
+        // dropped on purpose
+    }
+
+    public void endPrefixMapping(String prefix) throws SAXException {
+        // dropped on purpose
+    }
+
+    private void flushStartElement() throws SAXException {
+        if (pendingName != null) {
+            consumer.startElement("", pendingName, pendingName,
+                    pendingAttributes);
+            pendingName = null;
+            pendingAttributes.clear();
+        }
+    }
+
+    /*
+     * Adds the attributes that are not scripts to the pending element. Like
+     * in XSLT, a later attribute with the same name replaces the value of an
+     * earlier one.
+     */
+    private void addAttributes(Attributes atts) {
+        for (int i = 0; i < atts.getLength(); i++) {
+            String qName = atts.getQName(i);
+            if (qName.equals("xmlns") || qName.startsWith("xmlns:"))
+                continue; // namespace declarations are not attributes
+            String name = getLocalName(atts.getLocalName(i), qName);
+            String value = atts.getValue(i);
+            if (name.startsWith("on") || value.startsWith("javascript:"))
+                continue;
+            int index = pendingAttributes.getIndex(name);
+            if (index >= 0) {
+                pendingAttributes.setValue(index, value);
+            } else {
+                pendingAttributes.addAttribute("", name, name, "CDATA",
+                        value);
+            }
+        }
+    }
+
+    private static String getLocalName(String localName, String qName) {
+        if (localName != null && localName.length() > 0)
+            return localName;
+        return qName.substring(qName.indexOf(':') + 1);
+    }
+}
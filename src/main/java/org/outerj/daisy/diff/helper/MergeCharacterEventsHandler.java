@@ -20,36 +20,88 @@ import org.xml.sax.SAXException;
 import org.xml.sax.Locator;
 import org.xml.sax.Attributes;
 
+/**
+ * Merges consecutive character events into one event, or into slices of at
+ * most a given length. The characters are collected in a buffer that grows
+ * by doubling and is reused for the whole document.
+ */
 class MergeCharacterEventsHandler implements ContentHandler {
+
+    private static final int INITIAL_CAPACITY = 256;
+
     private ContentHandler consumer;
 
-    private char[] ch;
+    private final int maxLength;
 
-    private int start = 0;
+    private char[] ch;
 
     private int length = 0;
 
+    // whether a character event was received since the last flush, even an
+    // empty one
+    private boolean pending = false;
+
     public MergeCharacterEventsHandler(ContentHandler consumer) {
+        this(consumer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxLength - the maximum number of characters in one event
+     */
+    public MergeCharacterEventsHandler(ContentHandler consumer, int maxLength) {
+        if (maxLength < 2)
+            throw new IllegalArgumentException(
+                    "At least 2 characters are needed for a surrogate pair");
         this.consumer = consumer;
+        this.maxLength = maxLength;
     }
 
     public void characters(char ch[], int start, int length)
             throws SAXException {
-        char[] newCh = new char[this.length + length];
-        if (this.ch != null)
-            System.arraycopy(this.ch, this.start, newCh, 0, this.length);
-        System.arraycopy(ch, start, newCh, this.length, length);
-        this.start = 0;
-        this.length = newCh.length;
-        this.ch = newCh;
+        pending = true;
+        while (length > 0) {
+            if (this.length == maxLength)
+                flushSlice();
+            int n = Math.min(length, maxLength - this.length);
+            ensureCapacity(this.length + n);
+            System.arraycopy(ch, start, this.ch, this.length, n);
+            this.length += n;
+            start += n;
+            length -= n;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (ch == null) {
+            ch = new char[Math.min(Math.max(capacity, INITIAL_CAPACITY),
+                    maxLength)];
+        } else if (capacity > ch.length) {
+            int newCapacity = (int) Math.min(Math.max(capacity,
+                    2L * ch.length), maxLength);
+            char[] newCh = new char[newCapacity];
+            System.arraycopy(ch, 0, newCh, 0, length);
+            ch = newCh;
+        }
+    }
+
+    /*
+     * Sends the full buffer except a trailing high surrogate, which stays
+     * with the low surrogate that follows it.
+     */
+    private void flushSlice() throws SAXException {
+        int n = length;
+        if (Character.isHighSurrogate(ch[n - 1]))
+            n--;
+        consumer.characters(ch, 0, n);
+        System.arraycopy(ch, n, ch, 0, length - n);
+        length -= n;
     }
 
     private void flushCharacters() throws SAXException {
-        if (ch != null) {
-            consumer.characters(ch, start, length);
-            ch = null;
-            start = 0;
+        if (pending) {
+            consumer.characters(ch == null ? new char[0] : ch, 0, length);
             length = 0;
+            pending = false;
         }
     }
 
@@ -16,6 +16,8 @@
 package org.outerj.daisy.diff.helper;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.cyberneko.html.parsers.SAXParser;
 import org.xml.sax.Attributes;
@@ -24,15 +26,72 @@ import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Parses HTML files using the Neko HTML parser. Puts all elements and attribute
  * names to lowercase, removes all namespaces, produces well-formed XML.
+ * <p>
+ * Configured Neko parsers are kept for reuse, since building one is
+ * expensive compared to parsing a small document. A parser is used by one
+ * thread at a time, so a NekoHtmlParser can be shared by several threads.
+ * When all kept parsers are in use, a new one is built.
  */
 public class NekoHtmlParser {
 
-    public SaxBuffer parse(InputSource is) throws IOException, SAXException {
-        SaxBuffer buffer = new SaxBuffer();
+    private static final DefaultHandler NO_HANDLER = new DefaultHandler();
+
+    private final int maxTextLength;
+
+    private final ConcurrentLinkedQueue<SAXParser> parsers = new ConcurrentLinkedQueue<SAXParser>();
+
+    private final AtomicInteger nbIdle = new AtomicInteger();
+
+    private final int maxIdleParsers;
+
+    public NekoHtmlParser() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxTextLength - the maximum number of characters passed to the
+     * consumer at once. Longer runs of text are split into several character
+     * events.
+     */
+    public NekoHtmlParser(int maxTextLength) {
+        this(maxTextLength, parsersPerCore(1));
+    }
+
+    /**
+     * @param maxTextLength - the maximum number of characters passed to the
+     * consumer at once
+     * @param maxIdleParsers - the number of Neko parsers kept when they are
+     * not used, 0 to build a new one for every document
+     * @see #parsersPerCore(int)
+     */
+    public NekoHtmlParser(int maxTextLength, int maxIdleParsers) {
+        if (maxIdleParsers < 0)
+            throw new IllegalArgumentException(
+                    "The number of parsers can't be negative");
+        this.maxTextLength = maxTextLength;
+        this.maxIdleParsers = maxIdleParsers;
+    }
+
+    /**
+     * @return the given number of parsers for every processor available to
+     * the virtual machine
+     */
+    public static int parsersPerCore(int parsers) {
+        return parsers * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the events of the document, which can be replayed with
+     * {@link CompactSaxBuffer#toSAX(ContentHandler)}
+     */
+    public CompactSaxBuffer parse(InputSource is) throws IOException,
+            SAXException {
+        CompactSaxBuffer buffer = new CompactSaxBuffer();
         parse(is, buffer);
 
         return buffer;
@@ -43,7 +102,24 @@ public class NekoHtmlParser {
         if (is == null)
             throw new NullPointerException("is argument is required.");
 
-        SAXParser parser = new SAXParser();
+        SAXParser parser = acquire();
+        parser.setContentHandler(new RemoveNamespacesHandler(
+                new MergeCharacterEventsHandler(consumer, maxTextLength)));
+        parser.parse(is);
+        release(parser);
+    }
+
+    /*
+     * Returns an idle parser, or a new one if none is left.
+     */
+    private SAXParser acquire() throws SAXException {
+        SAXParser parser = parsers.poll();
+        if (parser != null) {
+            nbIdle.decrementAndGet();
+            return parser;
+        }
+
+        parser = new SAXParser();
         parser.setFeature("http://xml.org/sax/features/namespaces", true);
         parser
                 .setFeature(
@@ -62,10 +138,22 @@ public class NekoHtmlParser {
                 "lower");
         parser.setProperty("http://cyberneko.org/html/properties/names/attrs",
                 "lower");
+        return parser;
+    }
 
-        parser.setContentHandler(new RemoveNamespacesHandler(
-                new MergeCharacterEventsHandler(consumer)));
-        parser.parse(is);
+    /*
+     * Keeps a parser that parsed its document without errors for later use,
+     * unless enough parsers are idle. The parser resets its own state when it
+     * starts the next document.
+     */
+    private void release(SAXParser parser) {
+        // do not keep the consumer of the last document alive
+        parser.setContentHandler(NO_HANDLER);
+        if (nbIdle.incrementAndGet() <= maxIdleParsers) {
+            parsers.offer(parser);
+        } else {
+            nbIdle.decrementAndGet();
+        }
     }
 
     /**
@@ -0,0 +1,498 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Records SAX content events in a compact byte array, which can be stored
+ * and replayed later with {@link #replay(byte[], ContentHandler)}.
+ * <p>
+ * Unlike a {@link SaxBuffer}, no object is kept per event. Names, and
+ * attribute values that are short enough, are written once and referred to
+ * by their index afterwards. Numbers are written in as few bytes as needed,
+ * as are the characters of the text, so ASCII text takes one byte per
+ * character.
+ * <p>
+ * Lexical events are recorded as well, and replayed to handlers that are a
+ * {@link LexicalHandler}.
+ */
+public class SaxEventRecorder implements ContentHandler, LexicalHandler {
+
+    private static final int MAGIC = 0x44535801;
+
+    private static final byte START_DOCUMENT = 1;
+
+    private static final byte END_DOCUMENT = 2;
+
+    private static final byte START_ELEMENT = 3;
+
+    private static final byte END_ELEMENT = 4;
+
+    private static final byte CHARACTERS = 5;
+
+    private static final byte IGNORABLE_WHITESPACE = 6;
+
+    private static final byte PROCESSING_INSTRUCTION = 7;
+
+    private static final byte START_PREFIX_MAPPING = 8;
+
+    private static final byte END_PREFIX_MAPPING = 9;
+
+    private static final byte SKIPPED_ENTITY = 10;
+
+    private static final byte START_DTD = 11;
+
+    private static final byte END_DTD = 12;
+
+    private static final byte START_ENTITY = 13;
+
+    private static final byte END_ENTITY = 14;
+
+    private static final byte START_CDATA = 15;
+
+    private static final byte END_CDATA = 16;
+
+    private static final byte COMMENT = 17;
+
+    // longer attribute values, such as the ids of the changes, rarely repeat
+    private static final int MAX_SHARED_VALUE_LENGTH = 32;
+
+    // the bytes that were not spilled, which a CompactSaxBuffer replays
+    byte[] bytes = new byte[1024];
+
+    int length = 0;
+
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+
+    public SaxEventRecorder() {
+        writeInt(MAGIC);
+    }
+
+    /*
+     * Forgets all events.
+     */
+    void reset() {
+        length = 0;
+        names.clear();
+        writeInt(MAGIC);
+    }
+
+    /*
+     * Called when the bytes no longer fit in the array, before it grows.
+     * Returns true if the bytes were stored elsewhere, so that the array can
+     * be written over.
+     */
+    boolean spill(byte[] bytes, int length) throws SAXException {
+        return false;
+    }
+
+    /**
+     * @return the recorded events
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    public void setDocumentLocator(Locator locator) {
+        // don't record this event
+    }
+
+    public void startDocument() throws SAXException {
+        write(START_DOCUMENT);
+    }
+
+    public void endDocument() throws SAXException {
+        write(END_DOCUMENT);
+    }
+
+    public void startElement(String uri, String localName, String qName,
+            Attributes atts) throws SAXException {
+        write(START_ELEMENT);
+        writeName(uri);
+        writeName(localName);
+        writeName(qName);
+        writeNumber(atts.getLength());
+        for (int i = 0; i < atts.getLength(); i++) {
+            writeName(atts.getURI(i));
+            writeName(atts.getLocalName(i));
+            writeName(atts.getQName(i));
+            writeName(atts.getType(i));
+            String value = atts.getValue(i);
+            if (value.length() <= MAX_SHARED_VALUE_LENGTH) {
+                writeName(value);
+            } else {
+                writeNumber(0);
+                writeText(value);
+            }
+        }
+    }
+
+    public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+        write(END_ELEMENT);
+        writeName(uri);
+        writeName(localName);
+        writeName(qName);
+    }
+
+    public void characters(char[] ch, int start, int length)
+            throws SAXException {
+        write(CHARACTERS);
+        writeText(ch, start, length);
+    }
+
+    public void ignorableWhitespace(char[] ch, int start, int length)
+            throws SAXException {
+        write(IGNORABLE_WHITESPACE);
+        writeText(ch, start, length);
+    }
+
+    public void processingInstruction(String target, String data)
+            throws SAXException {
+        write(PROCESSING_INSTRUCTION);
+        writeName(target);
+        writeText(data);
+    }
+
+    public void startPrefixMapping(String prefix, String uri)
+            throws SAXException {
+        write(START_PREFIX_MAPPING);
+        writeName(prefix);
+        writeName(uri);
+    }
+
+    public void endPrefixMapping(String prefix) throws SAXException {
+        write(END_PREFIX_MAPPING);
+        writeName(prefix);
+    }
+
+    public void skippedEntity(String name) throws SAXException {
+        write(SKIPPED_ENTITY);
+        writeName(name);
+    }
+
+    public void startDTD(String name, String publicId, String systemId)
+            throws SAXException {
+        write(START_DTD);
+        writeName(name);
+        writeName(publicId);
+        writeName(systemId);
+    }
+
+    public void endDTD() throws SAXException {
+        write(END_DTD);
+    }
+
+    public void startEntity(String name) throws SAXException {
+        write(START_ENTITY);
+        writeName(name);
+    }
+
+    public void endEntity(String name) throws SAXException {
+        write(END_ENTITY);
+        writeName(name);
+    }
+
+    public void startCDATA() throws SAXException {
+        write(START_CDATA);
+    }
+
+    public void endCDATA() throws SAXException {
+        write(END_CDATA);
+    }
+
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        write(COMMENT);
+        writeText(ch, start, length);
+    }
+
+    /*
+     * Writes 0 for null, the index plus one of a name that was written
+     * before, or the next index plus one followed by the new name.
+     */
+    private void writeName(String name) throws SAXException {
+        if (name == null) {
+            writeNumber(0);
+            return;
+        }
+        Integer index = names.get(name);
+        if (index != null) {
+            writeNumber(index + 1);
+        } else {
+            writeNumber(names.size() + 1);
+            names.put(name, names.size());
+            writeText(name);
+        }
+    }
+
+    private void writeText(String text) throws SAXException {
+        writeNumber(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            writeNumber(text.charAt(i));
+        }
+    }
+
+    private void writeText(char[] ch, int start, int length) throws SAXException {
+        writeNumber(length);
+        for (int i = start; i < start + length; i++) {
+            writeNumber(ch[i]);
+        }
+    }
+
+    /*
+     * Writes a non-negative number 7 bits at a time, from the lowest.
+     */
+    private void writeNumber(int number) throws SAXException {
+        ensureCapacity(5);
+        while ((number & ~0x7f) != 0) {
+            bytes[length++] = (byte) ((number & 0x7f) | 0x80);
+            number >>>= 7;
+        }
+        bytes[length++] = (byte) number;
+    }
+
+    /*
+     * Writes the magic number, which is the first thing written.
+     */
+    private void writeInt(int number) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            bytes[length++] = (byte) (number >>> shift);
+        }
+    }
+
+    private void write(byte b) throws SAXException {
+        ensureCapacity(1);
+        bytes[length++] = b;
+    }
+
+    private void ensureCapacity(int extra) throws SAXException {
+        if (length + extra > bytes.length) {
+            if (length > 0 && spill(bytes, length)) {
+                length = 0;
+                if (extra <= bytes.length)
+                    return;
+            }
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length
+                    + extra));
+        }
+    }
+
+    /**
+     * Sends the events recorded in the given array to a handler.
+     * @throws SAXException if the array was not produced by a recorder, or
+     * if the handler throws it
+     */
+    public static void replay(byte[] recording, ContentHandler handler)
+            throws SAXException {
+        new Replay(recording, recording.length).send(handler);
+    }
+
+    /*
+     * Reads a recording from an array, which fill() may refill to read a
+     * recording that is not entirely in memory.
+     */
+    static class Replay {
+
+        byte[] bytes;
+
+        int position = 0;
+
+        int limit;
+
+        private final List<String> names = new ArrayList<String>();
+
+        private char[] text = new char[256];
+
+        Replay(byte[] bytes, int limit) {
+            this.bytes = bytes;
+            this.limit = limit;
+        }
+
+        /*
+         * Puts the next bytes of the recording in the array and returns true,
+         * or returns false at the end of the recording.
+         */
+        boolean fill() throws SAXException {
+            return false;
+        }
+
+        void send(ContentHandler handler) throws SAXException {
+            if (readInt() != MAGIC)
+                throw new SAXException("Not a recording of SAX events");
+            LexicalHandler lexicalHandler = handler instanceof LexicalHandler ? (LexicalHandler) handler
+                    : null;
+            AttributesImpl atts = new AttributesImpl();
+            int length;
+            while (position < limit || fill()) {
+                switch (bytes[position++]) {
+                case START_DOCUMENT:
+                    handler.startDocument();
+                    break;
+                case END_DOCUMENT:
+                    handler.endDocument();
+                    break;
+                case START_ELEMENT:
+                    String uri = readName();
+                    String localName = readName();
+                    String qName = readName();
+                    atts.clear();
+                    int nbAttributes = readNumber();
+                    for (int i = 0; i < nbAttributes; i++) {
+                        atts.addAttribute(readName(), readName(),
+                                readName(), readName(), readValue());
+                    }
+                    handler.startElement(uri, localName, qName, atts);
+                    break;
+                case END_ELEMENT:
+                    handler.endElement(readName(), readName(), readName());
+                    break;
+                case CHARACTERS:
+                    length = readText();
+                    handler.characters(text, 0, length);
+                    break;
+                case IGNORABLE_WHITESPACE:
+                    length = readText();
+                    handler.ignorableWhitespace(text, 0, length);
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    String target = readName();
+                    handler.processingInstruction(target, readString());
+                    break;
+                case START_PREFIX_MAPPING:
+                    handler.startPrefixMapping(readName(), readName());
+                    break;
+                case END_PREFIX_MAPPING:
+                    handler.endPrefixMapping(readName());
+                    break;
+                case SKIPPED_ENTITY:
+                    handler.skippedEntity(readName());
+                    break;
+                case START_DTD:
+                    String name = readName();
+                    String publicId = readName();
+                    String systemId = readName();
+                    if (lexicalHandler != null)
+                        lexicalHandler.startDTD(name, publicId, systemId);
+                    break;
+                case END_DTD:
+                    if (lexicalHandler != null)
+                        lexicalHandler.endDTD();
+                    break;
+                case START_ENTITY:
+                    name = readName();
+                    if (lexicalHandler != null)
+                        lexicalHandler.startEntity(name);
+                    break;
+                case END_ENTITY:
+                    name = readName();
+                    if (lexicalHandler != null)
+                        lexicalHandler.endEntity(name);
+                    break;
+                case START_CDATA:
+                    if (lexicalHandler != null)
+                        lexicalHandler.startCDATA();
+                    break;
+                case END_CDATA:
+                    if (lexicalHandler != null)
+                        lexicalHandler.endCDATA();
+                    break;
+                case COMMENT:
+                    length = readText();
+                    if (lexicalHandler != null)
+                        lexicalHandler.comment(text, 0, length);
+                    break;
+                default:
+                    throw new SAXException("Unknown SAX event at "
+                            + (position - 1));
+                }
+            }
+        }
+
+        private String readName() throws SAXException {
+            int index = readNumber();
+            if (index == 0)
+                return null;
+            if (index > names.size()) {
+                names.add(readString());
+            }
+            return names.get(index - 1);
+        }
+
+        private String readValue() throws SAXException {
+            int index = readNumber();
+            if (index == 0)
+                return readString();
+            if (index > names.size()) {
+                names.add(readString());
+            }
+            return names.get(index - 1);
+        }
+
+        private String readString() throws SAXException {
+            int length = readText();
+            return new String(text, 0, length);
+        }
+
+        /*
+         * Reads text in the text buffer and returns its length.
+         */
+        private int readText() throws SAXException {
+            int length = readNumber();
+            if (length > text.length)
+                text = new char[Math.max(length, 2 * text.length)];
+            for (int i = 0; i < length; i++) {
+                text[i] = (char) readNumber();
+            }
+            return length;
+        }
+
+        private int readNumber() throws SAXException {
+            int number = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = read();
+                number |= (b & 0x7f) << shift;
+                if (b >= 0)
+                    return number;
+            }
+        }
+
+        private int readInt() throws SAXException {
+            int number = 0;
+            for (int i = 0; i < 4; i++) {
+                number = (number << 8) | (read() & 0xff);
+            }
+            return number;
+        }
+
+        private byte read() throws SAXException {
+            if (position == limit && !fill())
+                throw new SAXException("Truncated recording of SAX events");
+            return bytes[position++];
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.eclipse.compare.internal.DiffTasks;
+import org.eclipse.compare.internal.LCSSettings;
+import org.eclipse.compare.rangedifferencer.DiffBudget;
+import org.eclipse.compare.rangedifferencer.IRangeComparator;
+import org.eclipse.compare.rangedifferencer.ITokenComparator;
+import org.eclipse.compare.rangedifferencer.RangeDifference;
+import org.eclipse.compare.rangedifferencer.RangeDifferencer;
+import org.outerj.daisy.diff.html.dom.BodyNode;
+import org.outerj.daisy.diff.html.dom.Node;
+import org.outerj.daisy.diff.html.dom.TagNode;
+import org.outerj.daisy.diff.html.dom.TextNode;
+
+/**
+ * Computes the differences between two {@link TextNodeComparator}s chunk by
+ * chunk instead of with one global comparison.
+ * <p>
+ * The children of both bodies are aligned by their
+ * {@link TagNode#getSubtreeHash() subtree hashes}. Aligned subtrees with the
+ * same text are left out of the comparison altogether. When a single element
+ * on each side with the same name differs, such as a paragraph with an edited
+ * word, their children are aligned the same way. All other text nodes form
+ * chunks, which are compared independently, possibly on several threads,
+ * after trimming their common prefix and suffix. The differences of the
+ * chunks are then shifted back to document indices, so the result is a valid
+ * script for the whole documents, though not necessarily the one a global
+ * comparison would find.
+ * <p>
+ * Both comparators must share a {@link org.outerj.daisy.diff.html.dom.helper.TokenDictionary},
+ * otherwise the documents are compared as a whole.
+ */
+class BlockChunker {
+
+    private static final RangeDifference[] EMPTY_RESULT = new RangeDifference[0];
+
+    private final LCSSettings settings;
+
+    private final DiffBudget budget;
+
+    // most subtree hashes are unique, which is what the histogram
+    // differencer anchors on
+    private final LCSSettings alignSettings = new LCSSettings();
+
+    private int[] leftTokens, rightTokens;
+
+    // the text node ranges still to compare: leftStart, leftEnd, rightStart,
+    // rightEnd
+    private final List<int[]> chunks = new ArrayList<int[]>();
+
+    BlockChunker(LCSSettings settings, DiffBudget budget) {
+        this.settings = settings;
+        this.budget = budget;
+        alignSettings.setAlgorithm(LCSSettings.Algorithm.HISTOGRAM);
+    }
+
+    /**
+     * Finds the differences between the text nodes of two documents.
+     * @param executor - the executor comparing the chunks, or <code>null</code>
+     * to compare them on the calling thread
+     * @param leftComparator - the old document
+     * @param rightComparator - the new document
+     * @return the differences, as {@link RangeDifferencer} would return them
+     */
+    public RangeDifference[] findDifferences(Executor executor,
+            TextNodeComparator leftComparator,
+            TextNodeComparator rightComparator) {
+        leftTokens = leftComparator.getTokens(rightComparator);
+        rightTokens = rightComparator.getTokens(leftComparator);
+        if (leftTokens == null || rightTokens == null
+                || countTextNodes(leftComparator.getBodyNode()) != leftTokens.length
+                || countTextNodes(rightComparator.getBodyNode()) != rightTokens.length)
+            return RangeDifferencer.findDifferences(null, settings, budget,
+                    leftComparator, rightComparator);
+
+        align(leftComparator.getBodyNode(), 0, rightComparator.getBodyNode(), 0);
+
+        List<FutureTask<RangeDifference[]>> tasks = new ArrayList<FutureTask<RangeDifference[]>>();
+        List<int[]> offsets = new ArrayList<int[]>();
+        for (int[] chunk : chunks)
+            submitChunk(executor, tasks, offsets, chunk[0], chunk[1],
+                    chunk[2], chunk[3]);
+
+        List<RangeDifference> result = new ArrayList<RangeDifference>();
+        try {
+            // help with the chunks the executor did not start yet
+            for (FutureTask<RangeDifference[]> task : tasks)
+                task.run();
+
+            for (int i = 0; i < tasks.size(); i++) {
+                int[] offset = offsets.get(i);
+                for (RangeDifference d : DiffTasks.getResult(tasks.get(i))) {
+                    result.add(new RangeDifference(RangeDifference.CHANGE,
+                            offset[1] + d.rightStart(), d.rightLength(),
+                            offset[0] + d.leftStart(), d.leftLength()));
+                }
+            }
+        } finally {
+            // stops the other chunks if one of them failed
+            for (FutureTask<RangeDifference[]> task : tasks)
+                task.cancel(true);
+        }
+        return result.toArray(EMPTY_RESULT);
+    }
+
+    /*
+     * Counts the text nodes below the body, whose tag was never closed.
+     */
+    private static int countTextNodes(BodyNode body) {
+        int count = 0;
+        for (Node child : body)
+            count += child instanceof TagNode ? ((TagNode) child)
+                    .getTextNodeCount() : 1;
+        return count;
+    }
+
+    /*
+     * Aligns the children of two corresponding tags whose first text nodes
+     * have the given indices, and adds the ranges that differ to the chunks.
+     */
+    private void align(TagNode left, int leftStart, TagNode right,
+            int rightStart) {
+        int[] leftStarts = getChildStarts(left, leftStart);
+        int[] rightStarts = getChildStarts(right, rightStart);
+        RangeDifference[] childDifferences = RangeDifferencer
+                .findDifferences(alignSettings, new TokenArrayComparator(
+                        getChildHashes(left)), new TokenArrayComparator(
+                        getChildHashes(right)));
+
+        int leftChild = 0;
+        int rightChild = 0;
+        for (int i = 0; i <= childDifferences.length; i++) {
+            int leftEnd = i < childDifferences.length ? childDifferences[i]
+                    .leftStart() : left.getNbChildren();
+
+            // equal hashes almost always mean equal subtrees
+            for (; leftChild < leftEnd; leftChild++, rightChild++) {
+                if (!sameTokens(leftStarts[leftChild],
+                        leftStarts[leftChild + 1], rightStarts[rightChild],
+                        rightStarts[rightChild + 1]))
+                    addChunk(leftStarts[leftChild], leftStarts[leftChild + 1],
+                            rightStarts[rightChild],
+                            rightStarts[rightChild + 1]);
+            }
+            if (i == childDifferences.length)
+                break;
+
+            RangeDifference d = childDifferences[i];
+            Node leftNode = d.leftLength() == 1 ? left.getChild(d.leftStart())
+                    : null;
+            Node rightNode = d.rightLength() == 1 ? right.getChild(d
+                    .rightStart()) : null;
+            if (leftNode instanceof TagNode
+                    && rightNode instanceof TagNode
+                    && ((TagNode) leftNode).getQName().equalsIgnoreCase(
+                            ((TagNode) rightNode).getQName())) {
+                align((TagNode) leftNode, leftStarts[d.leftStart()],
+                        (TagNode) rightNode, rightStarts[d.rightStart()]);
+            } else {
+                addChunk(leftStarts[d.leftStart()], leftStarts[d.leftEnd()],
+                        rightStarts[d.rightStart()], rightStarts[d.rightEnd()]);
+            }
+            leftChild = d.leftEnd();
+            rightChild = d.rightEnd();
+        }
+    }
+
+    /*
+     * Returns the index of the first text node of each child, followed by the
+     * index after the last text node of the tag.
+     */
+    private int[] getChildStarts(TagNode node, int start) {
+        int[] result = new int[node.getNbChildren() + 1];
+        result[0] = start;
+        for (int i = 0; i < node.getNbChildren(); i++) {
+            Node child = node.getChild(i);
+            result[i + 1] = result[i]
+                    + (child instanceof TagNode ? ((TagNode) child)
+                            .getTextNodeCount() : 1);
+        }
+        return result;
+    }
+
+    private static int[] getChildHashes(TagNode node) {
+        int[] result = new int[node.getNbChildren()];
+        for (int i = 0; i < result.length; i++) {
+            Node child = node.getChild(i);
+            result[i] = child instanceof TagNode ? ((TagNode) child)
+                    .getSubtreeHash() : ((TextNode) child).getToken();
+        }
+        return result;
+    }
+
+    private boolean sameTokens(int leftStart, int leftEnd, int rightStart,
+            int rightEnd) {
+        if (leftEnd - leftStart != rightEnd - rightStart)
+            return false;
+        for (int i = leftStart, j = rightStart; i < leftEnd; i++, j++)
+            if (leftTokens[i] != rightTokens[j])
+                return false;
+        return true;
+    }
+
+    /*
+     * Adds the given ranges to the chunks, merging them with the last chunk
+     * if they are adjacent.
+     */
+    private void addChunk(int leftStart, int leftEnd, int rightStart,
+            int rightEnd) {
+        if (leftStart == leftEnd && rightStart == rightEnd)
+            return;
+        if (!chunks.isEmpty()) {
+            int[] last = chunks.get(chunks.size() - 1);
+            if (last[1] == leftStart && last[3] == rightStart) {
+                last[1] = leftEnd;
+                last[3] = rightEnd;
+                return;
+            }
+        }
+        chunks.add(new int[] { leftStart, leftEnd, rightStart, rightEnd });
+    }
+
+    /*
+     * Submits the comparison of the given chunk without its common prefix and
+     * suffix, and records the indices its differences are relative to.
+     */
+    private void submitChunk(Executor executor,
+            List<FutureTask<RangeDifference[]>> tasks, List<int[]> offsets,
+            int leftStart, int leftEnd, int rightStart, int rightEnd) {
+        while (leftStart < leftEnd && rightStart < rightEnd
+                && leftTokens[leftStart] == rightTokens[rightStart]) {
+            leftStart++;
+            rightStart++;
+        }
+        while (leftStart < leftEnd && rightStart < rightEnd
+                && leftTokens[leftEnd - 1] == rightTokens[rightEnd - 1]) {
+            leftEnd--;
+            rightEnd--;
+        }
+        if (leftStart == leftEnd && rightStart == rightEnd)
+            return;
+
+        final TokenArrayComparator left = new TokenArrayComparator(
+                copyOfRange(leftTokens, leftStart, leftEnd));
+        final TokenArrayComparator right = new TokenArrayComparator(
+                copyOfRange(rightTokens, rightStart, rightEnd));
+        FutureTask<RangeDifference[]> task = new FutureTask<RangeDifference[]>(
+                new Callable<RangeDifference[]>() {
+                    public RangeDifference[] call() {
+                        return RangeDifferencer.findDifferences(null,
+                                settings, budget, left, right);
+                    }
+                });
+        if (executor != null)
+            DiffTasks.execute(executor, task);
+        tasks.add(task);
+        offsets.add(new int[] { leftStart, rightStart });
+    }
+
+    private static int[] copyOfRange(int[] values, int from, int to) {
+        int[] result = new int[to - from];
+        System.arraycopy(values, from, result, 0, result.length);
+        return result;
+    }
+
+    /*
+     * Compares sequences of tokens.
+     */
+    private static class TokenArrayComparator implements ITokenComparator {
+
+        private final int[] tokens;
+
+        TokenArrayComparator(int[] tokens) {
+            this.tokens = tokens;
+        }
+
+        public int getRangeCount() {
+            return tokens.length;
+        }
+
+        public boolean rangesEqual(int thisIndex, IRangeComparator other,
+                int otherIndex) {
+            return tokens[thisIndex] == ((TokenArrayComparator) other).tokens[otherIndex];
+        }
+
+        public boolean skipRangeComparison(int length, int maxLength,
+                IRangeComparator other) {
+            return false;
+        }
+
+        public int[] getTokens(IRangeComparator other) {
+            return tokens;
+        }
+    }
+}
@@ -17,8 +17,10 @@ package org.outerj.daisy.diff.html;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.eclipse.compare.internal.LCSSettings;
+import org.eclipse.compare.rangedifferencer.DiffBudget;
 import org.eclipse.compare.rangedifferencer.RangeDifference;
 import org.eclipse.compare.rangedifferencer.RangeDifferencer;
 import org.outerj.daisy.diff.html.modification.ModificationType;
@@ -35,18 +37,75 @@ public class HTMLDiffer implements Differ{
 
     private DiffOutput output;
 
+    private LCSSettings settings;
+
+    private Executor executor;
+
+    private boolean chunked = false;
+
+    private boolean degraded = false;
+
     public HTMLDiffer(DiffOutput dm) {
+        this(dm, new LCSSettings());
+    }
+
+    /**
+     * Creates a differ that computes the differences between the text nodes
+     * with the given settings, e.g. to select the
+     * {@link LCSSettings.Algorithm} used or to bound the time spent with
+     * {@link LCSSettings#setTimeLimit(long)}.
+     * @param dm - the output to write the merged tree to
+     * @param settings - the settings for the range differencer
+     */
+    public HTMLDiffer(DiffOutput dm, LCSSettings settings) {
+        this(dm, settings, null);
+    }
+
+    /**
+     * Creates a differ that uses the given executor to compare the left and
+     * the right document with the ancestor concurrently in a three-way diff.
+     * The differences found do not depend on the executor.
+     * @param dm - the output to write the merged tree to
+     * @param settings - the settings for the range differencer
+     * @param executor - the executor, or <code>null</code> to compare on the
+     * calling thread only
+     */
+    public HTMLDiffer(DiffOutput dm, LCSSettings settings, Executor executor) {
         output = dm;
+        this.settings = settings;
+        this.executor = executor;
+    }
+
+    /**
+     * Sets whether two-way diffs first pair the identical subtrees of both
+     * documents, such as unchanged paragraphs, headings and tables, and then
+     * only compare the text of the parts that differ. The chunks that differ
+     * are compared on the executor, if any. This is much faster for large
+     * documents, but may find other differences than comparing the documents
+     * as a whole.
+     * @param chunked - <code>true</code> to compare block by block
+     * @see BlockChunker
+     */
+    public void setChunked(boolean chunked) {
+        this.chunked = chunked;
+    }
+
+    /**
+     * Returns whether the last diff ran out of the time or edit distance
+     * allowed by the settings. The text after the point where it did is
+     * then marked as removed and added as a whole.
+     * @return <code>true</code> if the last diff was degraded
+     */
+    public boolean isDegraded() {
+        return degraded;
     }
 
     public void diff(TextNodeComparator ancestorComparator, TextNodeComparator leftComparator,
     		TextNodeComparator rightComparator) throws SAXException {
     	
-        LCSSettings settings = new LCSSettings();
-        settings.setUseGreedyMethod(false);
-        // settings.setPowLimit(1.5);
-        // settings.setTooLong(100000*100000);
-    	org.eclipse.compare.rangedifferencer.RangeDifference[] differences = RangeDifferencer.findDifferences(settings, ancestorComparator, leftComparator, rightComparator);
+    	DiffBudget budget = new DiffBudget(settings);
+    	org.eclipse.compare.rangedifferencer.RangeDifference[] differences = RangeDifferencer.findDifferences(null, settings, budget, executor, ancestorComparator, leftComparator, rightComparator);
+    	degraded = budget.isDegraded();
     	
     	List<RangeDifference> pdifferences = preProcess(differences);
     	
@@ -113,13 +172,12 @@ public class HTMLDiffer implements Differ{
      */
     public void diff(TextNodeComparator leftComparator,
             TextNodeComparator rightComparator) throws SAXException {
-        LCSSettings settings = new LCSSettings();
-        settings.setUseGreedyMethod(false);
-        // settings.setPowLimit(1.5);
-        // settings.setTooLong(100000*100000);
-
-        RangeDifference[] differences = RangeDifferencer.findDifferences(
-                settings, leftComparator, rightComparator);
+        DiffBudget budget = new DiffBudget(settings);
+        RangeDifference[] differences = chunked ? new BlockChunker(settings,
+                budget).findDifferences(executor, leftComparator,
+                rightComparator) : RangeDifferencer.findDifferences(null,
+                settings, budget, leftComparator, rightComparator);
+        degraded = budget.isDegraded();
 
         List<RangeDifference> pdifferences = preProcess(differences);
         int currentIndexLeft = 0;
@@ -15,6 +15,7 @@
  */
 package org.outerj.daisy.diff.html;
 
+import org.outerj.daisy.diff.html.dom.ElementDescriptor;
 import org.outerj.daisy.diff.html.dom.ImageNode;
 import org.outerj.daisy.diff.html.dom.Node;
 import org.outerj.daisy.diff.html.dom.TagNode;
@@ -45,8 +46,8 @@ public class HtmlSaxDiffOutput implements DiffOutput {
      */
     public void generateOutput(TagNode node) throws SAXException {
 
-        if (!node.getQName().equalsIgnoreCase("img")
-                && !node.getQName().equalsIgnoreCase("body")) {
+        ElementDescriptor element = node.getDescriptor();
+        if (!element.isImage() && !element.isBody()) {
             handler.startElement("", node.getQName(), node.getQName(), node
                     .getAttributes());
         }
@@ -187,8 +188,7 @@ public class HtmlSaxDiffOutput implements DiffOutput {
         	conflictStarted = false;
         }
 
-        if (!node.getQName().equalsIgnoreCase("img")
-                && !node.getQName().equalsIgnoreCase("body"))
+        if (!element.isImage() && !element.isBody())
             handler.endElement("", node.getQName(), node.getQName());
 
     }
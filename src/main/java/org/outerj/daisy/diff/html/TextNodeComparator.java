@@ -16,12 +16,13 @@
 package org.outerj.daisy.diff.html;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
 import org.eclipse.compare.rangedifferencer.IRangeComparator;
+import org.eclipse.compare.rangedifferencer.ITokenComparator;
 import org.outerj.daisy.diff.html.ancestor.AncestorComparator;
 import org.outerj.daisy.diff.html.ancestor.AncestorComparatorResult;
 import org.outerj.daisy.diff.html.dom.BodyNode;
@@ -30,6 +31,7 @@ import org.outerj.daisy.diff.html.dom.Node;
 import org.outerj.daisy.diff.html.dom.TagNode;
 import org.outerj.daisy.diff.html.dom.TextNode;
 import org.outerj.daisy.diff.html.dom.helper.LastCommonParentResult;
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
 import org.outerj.daisy.diff.html.modification.Modification;
 import org.outerj.daisy.diff.html.modification.ModificationType;
 
@@ -38,10 +40,15 @@ import org.outerj.daisy.diff.html.modification.ModificationType;
  * Then it can be used to compute the difference between DOM trees and mark
  * elements accordingly.
  */
-public class TextNodeComparator implements IRangeComparator, Iterable<TextNode> {
+public class TextNodeComparator implements ITokenComparator, Iterable<TextNode> {
 
     private List<TextNode> textNodes = new ArrayList<TextNode>(50);
 
+    private TokenDictionary tokenDictionary;
+
+    // the token of every text node, or null if some node was never interned
+    private int[] tokens;
+
     private List<Modification> lastModified = new ArrayList<Modification>();
 
     private BodyNode bodyNode;
@@ -53,6 +60,20 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
         this.locale = locale;
         textNodes = tree.getTextNodes();
         bodyNode = tree.getBodyNode();
+        tokenDictionary = tree.getTokenDictionary();
+        tokens = createTokens();
+    }
+
+    private int[] createTokens() {
+        if (tokenDictionary == null)
+            return null;
+        int[] result = new int[textNodes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = textNodes.get(i).getToken();
+            if (result[i] < 0)
+                return null;
+        }
+        return result;
     }
 
     public BodyNode getBodyNode() {
@@ -115,16 +136,28 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
     }
 
     public boolean rangesEqual(int i1, IRangeComparator rangeComp, int i2) {
-        TextNodeComparator comp;
-        try {
-            comp = (TextNodeComparator) rangeComp;
-        } catch (RuntimeException e) {
+        if (!(rangeComp instanceof TextNodeComparator))
             return false;
-        }
+        TextNodeComparator comp = (TextNodeComparator) rangeComp;
 
+        if (tokens != null && comp.getTokens(this) != null)
+            return tokens[i1] == comp.tokens[i2];
         return getTextNode(i1).isSameText(comp.getTextNode(i2));
     }
 
+    /**
+     * Returns the token ids of the text nodes if both comparators were built
+     * from trees sharing one {@link TokenDictionary}.
+     */
+    public int[] getTokens(IRangeComparator other) {
+        if (tokens == null || !(other instanceof TextNodeComparator))
+            return null;
+        TextNodeComparator comp = (TextNodeComparator) other;
+        if (comp.tokens == null || comp.tokenDictionary != tokenDictionary)
+            return null;
+        return tokens;
+    }
+
     public boolean skipRangeComparison(int arg0, int arg1, IRangeComparator arg2) {
         return false;
     }
@@ -133,6 +166,36 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
 
     private boolean changedIDUsed = false;
 
+    // the ancestry comparisons by the parent of the text node in this tree
+    // and the parent of the text node in the other tree
+    private IdentityHashMap<TagNode, IdentityHashMap<TagNode, AncestorComparatorResult>> ancestorResults = new IdentityHashMap<TagNode, IdentityHashMap<TagNode, AncestorComparatorResult>>();
+
+    /*
+     * Compares the ancestors of two text nodes. Neighbouring text nodes
+     * usually have the same parents, so the results are reused for every pair
+     * of parents. Splitting a parent copies its tag, which keeps the reused
+     * results valid.
+     */
+    private AncestorComparatorResult getAncestorResult(TextNode node,
+            TextNode otherNode) {
+        IdentityHashMap<TagNode, AncestorComparatorResult> results = ancestorResults
+                .get(node.getParent());
+        if (results == null) {
+            results = new IdentityHashMap<TagNode, AncestorComparatorResult>();
+            ancestorResults.put(node.getParent(), results);
+        }
+        AncestorComparatorResult result = results.get(otherNode.getParent());
+        if (result == null) {
+            AncestorComparator acthis = new AncestorComparator(node
+                    .getAncestors());
+            AncestorComparator acother = new AncestorComparator(otherNode
+                    .getAncestors());
+            result = acthis.getResult(acother, locale);
+            results.put(otherNode.getParent(), result);
+        }
+        return result;
+    }
+
     public void handlePossibleChangedPart(int leftstart, int leftend,
             int rightstart, int rightend, TextNodeComparator leftComparator) {
         int i = rightstart;
@@ -147,12 +210,8 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
 
         String changes = null;
         while (i < rightend) {
-            AncestorComparator acthis = new AncestorComparator(getTextNode(i)
-                    .getParentTree());
-            AncestorComparator acother = new AncestorComparator(leftComparator
-                    .getTextNode(j).getParentTree());
-
-            AncestorComparatorResult result = acthis.getResult(acother, locale);
+            AncestorComparatorResult result = getAncestorResult(
+                    getTextNode(i), leftComparator.getTextNode(j));
 
             if (result.isChanged()) {
 
@@ -254,7 +313,7 @@ public class TextNodeComparator implements IRangeComparator, Iterable<TextNode>
         oldComp.getTextNode(start).getModification().setFirstOfID(true);
 
         List<Node> deletedNodes = oldComp.getBodyNode().getMinimalDeletedSet(
-                deletedID);
+                oldComp.textNodes.subList(start, end));
 
         // Set prevLeaf to the leaf after which the old HTML needs to be
         // inserted
@@ -270,9 +329,9 @@ boolean useAfter = false;
         if (after < getRangeCount()) {
             
             LastCommonParentResult orderResult = getTextNode(before).getLastCommonParent(getTextNode(after));
-            List<TagNode> check = getTextNode(before).getParentTree();
-            Collections.reverse(check);
-            for(TagNode curr : check) {
+            List<TagNode> check = getTextNode(before).getAncestors();
+            for(int k = check.size() - 1; k >= 0; k--) {
+                TagNode curr = check.get(k);
                 if(curr == orderResult.getLastCommonParent()) {
                     break;
                 } else if (curr.isBlockLevel()) {
@@ -281,9 +340,9 @@ boolean useAfter = false;
                 }
             }
             if(!useAfter) {
-                check = getTextNode(after).getParentTree();
-                Collections.reverse(check);
-                for(TagNode curr : check) {
+                check = getTextNode(after).getAncestors();
+                for(int k = check.size() - 1; k >= 0; k--) {
+                    TagNode curr = check.get(k);
                     if(curr == orderResult.getLastCommonParent()) {
                         break;
                     } else if (curr.isBlockLevel()) {
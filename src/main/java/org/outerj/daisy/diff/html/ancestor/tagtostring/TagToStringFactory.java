@@ -16,84 +16,58 @@
 
 package org.outerj.daisy.diff.html.ancestor.tagtostring;
 
-import java.util.HashSet;
 import java.util.Locale;
 import java.util.ResourceBundle;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.outerj.daisy.diff.html.ancestor.TagChangeSematic;
+import org.outerj.daisy.diff.html.dom.ElementDescriptor;
 import org.outerj.daisy.diff.html.dom.TagNode;
 
 public class TagToStringFactory {
 
-    private static final Set<String> containerTags = new HashSet<String>();
-
-    private static final Set<String> styleTags = new HashSet<String>();
-
-    static {
-        containerTags.add("html");
-        containerTags.add("body");
-        containerTags.add("p");
-        containerTags.add("blockquote");
-        containerTags.add("h1");
-        containerTags.add("h2");
-        containerTags.add("h3");
-        containerTags.add("h4");
-        containerTags.add("h5");
-        containerTags.add("pre");
-        containerTags.add("div");
-        containerTags.add("ul");
-        containerTags.add("ol");
-        containerTags.add("li");
-        containerTags.add("table");
-        containerTags.add("tbody");
-        containerTags.add("tr");
-        containerTags.add("td");
-        containerTags.add("th");
-        containerTags.add("br");
-        containerTags.add("hr");
-        containerTags.add("code");
-        containerTags.add("dl");
-        containerTags.add("dt");
-        containerTags.add("dd");
-        containerTags.add("input");
-        containerTags.add("form");
-        containerTags.add("img");
-        // in-line tags that can be considered containers not styles
-        containerTags.add("span");
-        containerTags.add("a");
-
-        styleTags.add("i");
-        styleTags.add("b");
-        styleTags.add("strong");
-        styleTags.add("em");
-        styleTags.add("font");
-        styleTags.add("big");
-        styleTags.add("del");
-        styleTags.add("tt");
-        styleTags.add("sub");
-        styleTags.add("sup");
-        styleTags.add("strike");
-    }
-
     public TagToString create(TagNode node, Locale locale) {
-        TagChangeSematic sem = getChangeSemantic(node.getQName());
-        ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE_NAME, locale);
-        if (node.getQName().equalsIgnoreCase("a")) //$NON-NLS-1$
+        ElementDescriptor element = node.getDescriptor();
+        // subclasses may still decide by name
+        TagChangeSematic sem = getClass() == TagToStringFactory.class
+                ? getChangeSemantic(element)
+                : getChangeSemantic(node.getQName());
+        ResourceBundle bundle = getBundle(locale);
+        if (element.isAnchor())
             return new AnchorToString(node, sem, bundle);
-        if (node.getQName().equalsIgnoreCase("img")) //$NON-NLS-1$
+        if (element.isImage())
             return new NoContentTagToString(node, sem, bundle);
         return new TagToString(node, sem, bundle);
     }
 
     protected TagChangeSematic getChangeSemantic(String string) {
-        if (containerTags.contains(string.toLowerCase()))
+        return getChangeSemantic(ElementDescriptor.forName(string));
+    }
+
+    private static TagChangeSematic getChangeSemantic(ElementDescriptor element) {
+        if (element.isContainer())
             return TagChangeSematic.MOVED;
-        if (styleTags.contains(string.toLowerCase()))
+        if (element.isStyle())
             return TagChangeSematic.STYLE;
         return TagChangeSematic.UNKNOWN;
     }
 
     private static final String BUNDLE_NAME = "l10n/messages";
 
+    private static final ConcurrentMap<Locale, ResourceBundle> bundles = new ConcurrentHashMap<Locale, ResourceBundle>();
+
+    /**
+     * Returns the messages describing changes in the given locale. They are
+     * looked up once per locale, since every changed text node needs them.
+     */
+    public static ResourceBundle getBundle(Locale locale) {
+        ResourceBundle bundle = bundles.get(locale);
+        if (bundle == null) {
+            bundle = ResourceBundle.getBundle(BUNDLE_NAME, locale);
+            bundles.putIfAbsent(locale, bundle);
+        }
+        return bundle;
+    }
+
 }
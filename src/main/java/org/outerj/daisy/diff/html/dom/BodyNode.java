@@ -16,7 +16,9 @@
 package org.outerj.daisy.diff.html.dom;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.xml.sax.helpers.AttributesImpl;
 
@@ -51,4 +53,50 @@ public class BodyNode extends TagNode {
         return nodes;
     }
 
+    /**
+     * Returns the same nodes as {@link #getMinimalDeletedSet(long)} for the
+     * id of the given text nodes, which must be all the nodes with that id in
+     * document order. Only the ancestors of the deleted nodes are visited
+     * instead of the whole tree.
+     * @param deleted - the text nodes that were marked as deleted
+     * @return the largest deleted subtrees in document order
+     */
+    public List<Node> getMinimalDeletedSet(List<? extends Node> deleted) {
+        // the number of entirely deleted children of every ancestor, a tag is
+        // entirely deleted when all its children are
+        Map<TagNode, Integer> deletedChildren = new IdentityHashMap<TagNode, Integer>();
+        for (Node node : deleted) {
+            for (TagNode parent = node.getParent(); parent != null
+                    && parent != this; parent = parent.getParent()) {
+                Integer count = deletedChildren.get(parent);
+                int newCount = count == null ? 1 : count + 1;
+                deletedChildren.put(parent, newCount);
+                if (newCount < parent.getNbChildren())
+                    break;
+            }
+        }
+
+        List<Node> nodes = new ArrayList<Node>();
+        Node last = null;
+        for (Node node : deleted) {
+            Node top = node;
+            while (top.getParent() != null && top.getParent() != this
+                    && isDeleted(top.getParent(), deletedChildren)) {
+                top = top.getParent();
+            }
+            // the nodes of a subtree follow each other
+            if (top != last) {
+                nodes.add(top);
+                last = top;
+            }
+        }
+        return nodes;
+    }
+
+    private static boolean isDeleted(TagNode node,
+            Map<TagNode, Integer> deletedChildren) {
+        Integer count = deletedChildren.get(node);
+        return count != null && count == node.getNbChildren();
+    }
+
 }
@@ -17,10 +17,18 @@ package org.outerj.daisy.diff.html.dom;
 
 import java.util.List;
 
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
+
 public interface DomTree {
 
     public List<TextNode> getTextNodes();
 
     public BodyNode getBodyNode();
 
+    /**
+     * @return the dictionary in which the text nodes of this tree were
+     * interned, or <code>null</code> if they carry no token ids
+     */
+    public TokenDictionary getTokenDictionary();
+
 }
@@ -17,6 +17,8 @@ package org.outerj.daisy.diff.html.dom;
 
 import java.util.ArrayList;
 import java.util.List;
+
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
@@ -46,6 +48,27 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
 
     private Node lastSibling = null;
 
+    private final TokenDictionary tokenDictionary;
+
+    /**
+     * Creates a builder without a dictionary, whose text nodes are compared
+     * by their text.
+     */
+    public DomTreeBuilder() {
+        this(null);
+    }
+
+    /**
+     * Creates a builder that interns every word it emits in the given
+     * dictionary. Share one dictionary between the builders of all documents
+     * that will be compared, so their text nodes can be compared by token id.
+     * @param tokenDictionary - the dictionary to intern words in, or
+     * <code>null</code> to compare the text nodes by their text
+     */
+    public DomTreeBuilder(TokenDictionary tokenDictionary) {
+        this.tokenDictionary = tokenDictionary;
+    }
+
     public BodyNode getBodyNode() {
         return bodyNode;
     }
@@ -54,6 +77,10 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
         return textNodes;
     }
 
+    public TokenDictionary getTokenDictionary() {
+        return tokenDictionary;
+    }
+
     @Override
     public void startDocument() throws SAXException {
         if (documentStarted)
@@ -98,7 +125,7 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
 
         } else if (bodyStarted) {
             // Ignoring element after body tag closed
-        } else if (localName.equalsIgnoreCase("body")) {
+        } else if (ElementDescriptor.forName(localName).isBody()) {
             bodyStarted = true;
         }
     }
@@ -110,16 +137,17 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
         if (!documentStarted || documentEnded)
             throw new IllegalStateException();
 
-        if (localName.equalsIgnoreCase("body")) {
+        ElementDescriptor element = ElementDescriptor.forName(localName);
+        if (element.isBody()) {
             bodyEnded = true;
         } else if (bodyStarted && !bodyEnded) {
-            if (localName.equalsIgnoreCase("img")) {
+            if (element.isImage()) {
                 // Insert a dummy leaf for the image
                 ImageNode img = new ImageNode(currentParent, currentParent
                         .getAttributes());
                 img.setWhiteBefore(whiteSpaceBeforeThis);
                 lastSibling = img;
-                textNodes.add(img);
+                addTextNode(img);
             }
             endWord();
             if (currentParent.isInline()) {
@@ -127,12 +155,13 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
             } else {
                 lastSibling = null;
             }
-            if (localName.equalsIgnoreCase("pre")) {
+            if (element.isPre()) {
                 numberOfActivePreTags--;
             }
             if (isSeparatingTag(currentParent)) {
                addSeparatorNode();
             }
+            setSubtreeHash(currentParent);
             currentParent = currentParent.getParent();
             whiteSpaceBeforeThis = false;
         }
@@ -159,7 +188,7 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
                     textNode.setWhiteBefore(whiteSpaceBeforeThis);
                     whiteSpaceBeforeThis = false;
                     lastSibling = textNode;
-                    textNodes.add(textNode);
+                    addTextNode(textNode);
 
                 }
             } else {
@@ -175,11 +204,43 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
             node.setWhiteBefore(whiteSpaceBeforeThis);
             whiteSpaceBeforeThis = false;
             lastSibling = node;
-            textNodes.add(node);
+            addTextNode(node);
             newWord.setLength(0);
         }
     }
 
+    /**
+     * Interns the text of the given node and appends it to the text nodes.
+     */
+    private void addTextNode(TextNode node) {
+        if (tokenDictionary != null)
+            node.setToken(tokenDictionary.intern(node.getTokenKey()));
+        textNodes.add(node);
+    }
+
+    /**
+     * Combines the hash of the tag with the hashes of its children, which are
+     * complete when the tag is closed, and counts its text nodes.
+     */
+    static void setSubtreeHash(TagNode node) {
+        int hash = node.hashCode();
+        int count = 0;
+        for (Node child : node) {
+            if (child instanceof TagNode) {
+                TagNode tagNode = (TagNode) child;
+                hash = 31 * hash + tagNode.getSubtreeHash();
+                count += tagNode.getTextNodeCount();
+            } else {
+                TextNode textNode = (TextNode) child;
+                hash = 31 * hash + (textNode.getToken() >= 0 ? textNode
+                        .getToken() : textNode.getTokenKey().hashCode());
+                count++;
+            }
+        }
+        node.setSubtreeHash(hash);
+        node.setTextNodeCount(count);
+    }
+
     /**
      * Returns <code>true</code> if the given tag separates text nodes
      * from being successive. I.e. every block starts a new distinct text flow.
@@ -187,8 +248,7 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
      * @return
      */
     private boolean isSeparatingTag(TagNode aTagNode) {
-    	// treat all block tags as separating
-    	return aTagNode.isBlockLevel();
+    	return aTagNode.getDescriptor().isSeparating();
 	}
 
     /**
@@ -204,7 +264,7 @@ public class DomTreeBuilder extends DefaultHandler implements DomTree {
     		return;
     	}
     	
-    	textNodes.add(new SeparatingNode(currentParent));
+    	addTextNode(new SeparatingNode(currentParent));
     }
     
     public static boolean isDelimiter(char c) {
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html.dom;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What the diff needs to know about an HTML element, looked up once per
+ * element name instead of comparing the name as a string every time. Every
+ * {@link TagNode} gets the descriptor of its name when it is created, and
+ * tags with the same name share the name string of their descriptor.
+ * <p>
+ * Names are matched case-insensitively.
+ */
+public final class ElementDescriptor {
+
+    private static final Set<String> BLOCKS = new HashSet<String>(Arrays
+            .asList("html", "body", "p", "blockquote", "h1", "h2", "h3", "h4",
+                    "h5", "pre", "div", "ul", "ol", "li", "table", "tbody",
+                    "tr", "td", "th", "br", "thead", "tfoot"));
+
+    private static final Set<String> CONTAINERS = new HashSet<String>(Arrays
+            .asList("html", "body", "p", "blockquote", "h1", "h2", "h3", "h4",
+                    "h5", "pre", "div", "ul", "ol", "li", "table", "tbody",
+                    "tr", "td", "th", "br", "hr", "code", "dl", "dt", "dd",
+                    "input", "form", "img",
+                    // in-line tags that can be considered containers not
+                    // styles
+                    "span", "a"));
+
+    private static final Set<String> STYLES = new HashSet<String>(Arrays
+            .asList("i", "b", "strong", "em", "font", "big", "del", "tt",
+                    "sub", "sup", "strike"));
+
+    // more names than this are not remembered, against documents with
+    // endless made up elements
+    private static final int MAX_DESCRIPTORS = 4096;
+
+    private static final ConcurrentMap<String, ElementDescriptor> descriptors = new ConcurrentHashMap<String, ElementDescriptor>();
+
+    private final String qName;
+
+    private final String name;
+
+    private final boolean blockLevel;
+
+    private final boolean container;
+
+    private final boolean style;
+
+    private final boolean pre;
+
+    private final boolean body;
+
+    private final boolean image;
+
+    private final boolean anchor;
+
+    private ElementDescriptor(String qName) {
+        this.qName = qName;
+        name = qName.toLowerCase(Locale.ENGLISH);
+        blockLevel = BLOCKS.contains(name);
+        container = CONTAINERS.contains(name);
+        style = STYLES.contains(name);
+        pre = name.equals("pre");
+        body = name.equals("body");
+        image = name.equals("img");
+        anchor = name.equals("a");
+    }
+
+    /**
+     * @param qName - the name of an element, as it was parsed
+     * @return the descriptor of the element
+     */
+    public static ElementDescriptor forName(String qName) {
+        ElementDescriptor descriptor = descriptors.get(qName);
+        if (descriptor == null) {
+            descriptor = new ElementDescriptor(qName);
+            if (descriptors.size() < MAX_DESCRIPTORS) {
+                ElementDescriptor existing = descriptors.putIfAbsent(qName,
+                        descriptor);
+                if (existing != null)
+                    descriptor = existing;
+            }
+        }
+        return descriptor;
+    }
+
+    /**
+     * @return the name of the element as it was parsed
+     */
+    public String getQName() {
+        return qName;
+    }
+
+    /**
+     * @return the lower-cased name of the element
+     */
+    public String getName() {
+        return name;
+    }
+
+    public boolean isBlockLevel() {
+        return blockLevel;
+    }
+
+    public boolean isInline() {
+        return !blockLevel;
+    }
+
+    /**
+     * @return whether the element starts a new flow of text nodes, which is
+     * the case for every block
+     */
+    public boolean isSeparating() {
+        return blockLevel;
+    }
+
+    /**
+     * @return whether white space in the element is preserved
+     */
+    public boolean isPre() {
+        return pre;
+    }
+
+    /**
+     * @return whether a change of the element moves its content rather than
+     * styling it
+     */
+    public boolean isContainer() {
+        return container;
+    }
+
+    /**
+     * @return whether a change of the element changes the style of its
+     * content
+     */
+    public boolean isStyle() {
+        return style;
+    }
+
+    public boolean isBody() {
+        return body;
+    }
+
+    public boolean isImage() {
+        return image;
+    }
+
+    public boolean isAnchor() {
+        return anchor;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -33,16 +33,26 @@ public class ImageNode extends TextNode {
 
     @Override
     public boolean isSameText(Object other) {
-        if (other == null)
+        if (!(other instanceof ImageNode))
             return false;
 
-        ImageNode otherImageNode;
-        try {
-            otherImageNode = (ImageNode) other;
-        } catch (ClassCastException e) {
-            return false;
+        return getText().equalsIgnoreCase(((ImageNode) other).getText());
+    }
+
+    /**
+     * Folds the case of every character the same way
+     * {@link String#equalsIgnoreCase(String)} does, so the keys of two images
+     * are equal exactly when {@link #isSameText(Object)} holds.
+     */
+    @Override
+    public String getTokenKey() {
+        String text = getText();
+        StringBuilder key = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            key.append(Character.toLowerCase(Character.toUpperCase(text
+                    .charAt(i))));
         }
-        return getText().equalsIgnoreCase(otherImageNode.getText());
+        return key.toString();
     }
 
     public AttributesImpl getAttributes() {
@@ -29,6 +29,11 @@ public abstract class Node {
     protected TagNode parent;
     private TagNode root;
 
+    // the ancestors ordered from the root, built when first needed and
+    // cleared whenever the parent of this node or one of its ancestors
+    // changes
+    private List<TagNode> ancestors;
+
     /**
      * This constructor not only sets the parameter as the parent for the
      * created node, but also appends the created node to the collection
@@ -62,14 +67,33 @@ public abstract class Node {
      * <code>List&lt;TagNode></code> if the parent is null.
      */
     public List<TagNode> getParentTree() {
-        List<TagNode> ancestors = new ArrayList<TagNode>();
-        for (TagNode ancestor = getParent(); ancestor != null; ancestor = ancestor.getParent()) {
-            ancestors.add(ancestor);
+        return new ArrayList<TagNode>(getAncestors());
+    }
+
+    /**
+     * Returns the same ancestors as {@link #getParentTree()}, but without
+     * copying them. The list is shared by all children of the parent and
+     * remains valid until this node or one of its ancestors is moved.
+     * @return the unmodifiable list of the ancestors, ordered from the root
+     */
+    public List<TagNode> getAncestors() {
+        if (ancestors == null) {
+            if (parent == null) {
+                ancestors = Collections.emptyList();
+            } else {
+                ancestors = parent.getAncestorsAndSelf();
+            }
         }
-        Collections.reverse(ancestors);
         return ancestors;
     }
 
+    /**
+     * @return the number of ancestors of this node, which is 0 for the root
+     */
+    public int getDepth() {
+        return getAncestors().size();
+    }
+
     //change for correct insertion of the deleted nodes
     
     /**
@@ -114,8 +138,8 @@ public abstract class Node {
 
         //note that these lists are never null,
         //but sometimes are empty.
-        List<TagNode> myParents = getParentTree();
-        List<TagNode> otherParents = other.getParentTree();
+        List<TagNode> myParents = getAncestors();
+        List<TagNode> otherParents = other.getAncestors();
 
         int i = 1;
         boolean isSame = true;
@@ -163,11 +187,25 @@ public abstract class Node {
         this.parent = parent;
         if (parent != null)
             setRoot(parent.getRoot());
+        else
+            clearAncestors();
     }
 
+    /**
+     * Sets the root of this node and its descendants, which also discards
+     * their cached ancestors.
+     */
     protected void setRoot(TagNode root)
     {
         this.root = root;
+        ancestors = null;
+    }
+
+    /**
+     * Discards the cached ancestors of this node and its descendants.
+     */
+    protected void clearAncestors() {
+        ancestors = null;
     }
 
     public abstract Node copyTree();
@@ -178,7 +216,7 @@ public abstract class Node {
      * where this node is &lt;pre> tag)
      */
     public boolean inPre() {
-        for (TagNode ancestor : getParentTree()) {
+        for (TagNode ancestor : getAncestors()) {
             if (ancestor.isPre()) {
                 return true;
             }
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html.dom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
+import org.xml.sax.Attributes;
+
+/**
+ * A parsed document that is never diffed itself, so it can be kept and
+ * shared. Diffing marks and moves the nodes of a tree, so every comparison
+ * works on a {@link #newTree(TokenDictionary) new tree} built from this
+ * one. Building it shares the text and attributes of this document and does
+ * not parse anything again.
+ */
+public final class ParsedDocument {
+
+    // rough sizes in bytes of the objects kept per node
+    private static final int TAG_SIZE = 160;
+
+    private static final int TEXT_SIZE = 64;
+
+    private static final int STRING_SIZE = 40;
+
+    private final BodyNode bodyNode;
+
+    // the text nodes in the order of the tree, and the index of their words
+    // in the vocabulary
+    private final TextNode[] textNodes;
+
+    private final int[] tokens;
+
+    private final String[] vocabulary;
+
+    private final long retainedSize;
+
+    /**
+     * @param tree - the tree of a document, which must not be used
+     * afterwards
+     * @throws IllegalArgumentException if the text nodes of the tree are not
+     * its leaves, in order
+     */
+    public ParsedDocument(DomTree tree) {
+        bodyNode = tree.getBodyNode();
+        List<TextNode> leaves = new ArrayList<TextNode>(tree.getTextNodes()
+                .size());
+        long size = addLeaves(bodyNode, leaves);
+        if (!leaves.equals(tree.getTextNodes()))
+            throw new IllegalArgumentException(
+                    "The text nodes are not the leaves of the tree");
+        textNodes = leaves.toArray(new TextNode[leaves.size()]);
+
+        tokens = new int[textNodes.length];
+        Map<String, Integer> words = new HashMap<String, Integer>();
+        for (int i = 0; i < textNodes.length; i++) {
+            String key = textNodes[i].getTokenKey();
+            Integer token = words.get(key);
+            if (token == null) {
+                token = words.size();
+                words.put(key, token);
+                size += STRING_SIZE + 2 * key.length();
+            }
+            tokens[i] = token;
+        }
+        vocabulary = new String[words.size()];
+        for (Map.Entry<String, Integer> word : words.entrySet()) {
+            vocabulary[word.getValue()] = word.getKey();
+        }
+        retainedSize = size + 4 * tokens.length + 8 * vocabulary.length;
+    }
+
+    /*
+     * Collects the text nodes below the given tag and estimates the size of
+     * its descendants.
+     */
+    private static long addLeaves(TagNode tag, List<TextNode> leaves) {
+        long size = TAG_SIZE + 8 * tag.getNbChildren();
+        Attributes attributes = tag.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            size += 3 * STRING_SIZE + 2 * (attributes.getQName(i).length()
+                    + attributes.getValue(i).length());
+        }
+        for (Node child : tag) {
+            if (child instanceof TagNode) {
+                size += addLeaves((TagNode) child, leaves);
+            } else {
+                TextNode text = (TextNode) child;
+                leaves.add(text);
+                size += TEXT_SIZE + STRING_SIZE + 2 * text.getText().length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated number of bytes kept alive by this document
+     */
+    public long getRetainedSize() {
+        return retainedSize;
+    }
+
+    /**
+     * Builds a tree like the one this document was parsed into, which can be
+     * diffed and changed freely.
+     * @param tokenDictionary - the dictionary to intern the words of the new
+     * tree in, shared with the trees it will be compared with, or
+     * <code>null</code>
+     */
+    public DomTree newTree(TokenDictionary tokenDictionary) {
+        Copy copy = new Copy(tokenDictionary);
+        copy.copyChildren(bodyNode, copy.bodyNode);
+        return copy;
+    }
+
+    private class Copy implements DomTree {
+
+        private final BodyNode bodyNode = new BodyNode();
+
+        private final List<TextNode> textNodes = new ArrayList<TextNode>(
+                ParsedDocument.this.textNodes.length);
+
+        private final TokenDictionary tokenDictionary;
+
+        // the token in the dictionary of each word of the vocabulary, or -1
+        private final int[] tokenMap;
+
+        Copy(TokenDictionary tokenDictionary) {
+            this.tokenDictionary = tokenDictionary;
+            tokenMap = new int[vocabulary.length];
+            Arrays.fill(tokenMap, -1);
+        }
+
+        void copyChildren(TagNode original, TagNode copy) {
+            for (Node child : original) {
+                Node newChild;
+                if (child instanceof TagNode) {
+                    TagNode newTag = new TagNode(copy, (TagNode) child);
+                    copyChildren((TagNode) child, newTag);
+                    DomTreeBuilder.setSubtreeHash(newTag);
+                    newChild = newTag;
+                } else {
+                    newChild = copyText((TextNode) child, copy);
+                }
+                newChild.setWhiteBefore(child.isWhiteBefore());
+                newChild.setWhiteAfter(child.isWhiteAfter());
+            }
+        }
+
+        private TextNode copyText(TextNode original, TagNode parent) {
+            TextNode copy;
+            if (original instanceof ImageNode) {
+                copy = new ImageNode(parent, ((ImageNode) original)
+                        .getAttributes());
+            } else if (original instanceof SeparatingNode) {
+                copy = new SeparatingNode(parent);
+            } else if (original instanceof WhiteSpaceNode) {
+                copy = new WhiteSpaceNode(parent, original.getText());
+            } else {
+                copy = new TextNode(parent, original.getText());
+            }
+
+            int index = textNodes.size();
+            if (tokenDictionary != null) {
+                int word = tokens[index];
+                if (tokenMap[word] < 0)
+                    tokenMap[word] = tokenDictionary.intern(vocabulary[word]);
+                copy.setToken(tokenMap[word]);
+            }
+            textNodes.add(copy);
+            return copy;
+        }
+
+        public List<TextNode> getTextNodes() {
+            return textNodes;
+        }
+
+        public BodyNode getBodyNode() {
+            return bodyNode;
+        }
+
+        public TokenDictionary getTokenDictionary() {
+            return tokenDictionary;
+        }
+    }
+}
@@ -32,20 +32,46 @@ public class TagNode extends Node implements Iterable<Node> {
 
     private String qName;
 
+    private final ElementDescriptor descriptor;
+
     private final Attributes attributes;
 
     /**
-     * Attributes objects are unmodifiable and {@link #attributes} is final, so we can usefully cache the
-     * equality of ours to others.
+     * The lower-cased name and the canonical form of the attributes, computed
+     * when first needed. They are never modified, so tags can be compared by
+     * this string and its 64-bit hash.
      */
-    private IdentityHashMap<Attributes, Boolean> attributesEqualityTests = new IdentityHashMap<Attributes, Boolean>();
+    private String fingerprint;
+
+    private long fingerprintHash;
+
+    private int subtreeHash = 0;
+
+    private int textNodeCount = 0;
+
+    // the ancestors followed by this node, shared by the children
+    private List<TagNode> ancestorsAndSelf;
 
     public TagNode(TagNode parent, String qName, Attributes attributesarg) {
         super(parent);
-        this.qName = qName;
+        descriptor = ElementDescriptor.forName(qName);
+        this.qName = descriptor.getQName();
         attributes = new AttributesImpl(attributesarg);
     }
 
+    /**
+     * Creates a tag with the same name as the given one, sharing its
+     * attributes since they are never modified.
+     */
+    TagNode(TagNode parent, TagNode like) {
+        super(parent);
+        this.qName = like.qName;
+        descriptor = like.descriptor;
+        attributes = like.attributes;
+        fingerprint = like.fingerprint;
+        fingerprintHash = like.fingerprintHash;
+    }
+
     /**
      * appends the provided node to the collection of children if 
      * <code>this</code> node is set as the parameter's parent.
@@ -67,12 +93,36 @@ public class TagNode extends Node implements Iterable<Node> {
     protected void setRoot(TagNode root)
     {
         super.setRoot(root);
+        ancestorsAndSelf = null;
         for (Node child : children)
         {
             child.setRoot(root);
         }
     }
 
+    @Override
+    protected void clearAncestors() {
+        super.clearAncestors();
+        ancestorsAndSelf = null;
+        for (Node child : children) {
+            child.clearAncestors();
+        }
+    }
+
+    /**
+     * @return the unmodifiable list of the ancestors of the children of this
+     * node
+     */
+    List<TagNode> getAncestorsAndSelf() {
+        if (ancestorsAndSelf == null) {
+            List<TagNode> ancestors = getAncestors();
+            TagNode[] path = ancestors.toArray(new TagNode[ancestors.size() + 1]);
+            path[ancestors.size()] = this;
+            ancestorsAndSelf = Collections.unmodifiableList(Arrays.asList(path));
+        }
+        return ancestorsAndSelf;
+    }
+
     /**
      * If the provided parameter is in the same tree with
      * <code>this</code> object then this method fetches 
@@ -132,6 +182,10 @@ public class TagNode extends Node implements Iterable<Node> {
         return qName;
     }
 
+    public ElementDescriptor getDescriptor() {
+        return descriptor;
+    }
+
     public Attributes getAttributes() {
         return attributes;
     }
@@ -199,22 +253,19 @@ public class TagNode extends Node implements Iterable<Node> {
 	return false;
     }
 
-    private boolean hasSameAttributes(final Attributes otherAttributes)
-    {
-        if (otherAttributes == null) {
-			return false;
-		}
-        if (attributesEqualityTests.get(otherAttributes) != null) {
-			return attributesEqualityTests.get(otherAttributes);
-		}
-        boolean result = getAttributesMap().hasSameAttributes(otherAttributes);
-        attributesEqualityTests.put(otherAttributes, result);
-        return result;
-    }
-
-    private AttributesMap getAttributesMap()
-    {
-        return new AttributesMap(getAttributes());
+    private String getFingerprint() {
+        if (fingerprint == null) {
+            String result = descriptor.getName() + ' '
+                    + AttributesMap.canonicalForm(attributes);
+            // FNV-1a
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < result.length(); i++) {
+                hash = (hash ^ result.charAt(i)) * 0x100000001b3L;
+            }
+            fingerprintHash = hash;
+            fingerprint = result;
+        }
+        return fingerprint;
     }
 
     /**
@@ -225,14 +276,14 @@ public class TagNode extends Node implements Iterable<Node> {
      * @return wether this tag is similar to the other node
      */
     protected boolean isSimilarTag(Node another) {
-    	boolean result = false;
-    	if (another instanceof TagNode) {
-    		TagNode otherNode = (TagNode) another;
-    		if (this.getQName().equalsIgnoreCase(otherNode.getQName())) {
-    			result = hasSameAttributes(otherNode.getAttributes());
-    		}
+    	if (!(another instanceof TagNode)) {
+    		return false;
     	}
-		return result;
+    	TagNode otherNode = (TagNode) another;
+    	String otherFingerprint = otherNode.getFingerprint();
+    	return getFingerprint() == otherFingerprint
+    			|| (fingerprintHash == otherNode.fingerprintHash
+    					&& fingerprint.equals(otherFingerprint));
     }
 
     /**
@@ -244,13 +295,41 @@ public class TagNode extends Node implements Iterable<Node> {
      */
     @Override
     public int hashCode(){
-    	final int simple = 29;
-    	int result = this.getQName().hashCode();
-        AttributesMap attrs = getAttributesMap();
-        result = result*simple + attrs.hashCode();
-    	return result;
+    	getFingerprint();
+    	return (int) (fingerprintHash ^ (fingerprintHash >>> 32));
     }
     
+    /**
+     * Returns a hash of this tag, its attributes and all its descendants
+     * including their text, as computed by the {@link DomTreeBuilder} when
+     * the tag was closed. Subtrees of documents built with the same
+     * {@link org.outerj.daisy.diff.html.dom.helper.TokenDictionary} that were
+     * parsed identically have the same hash. Changes made to the tree while
+     * diffing are not reflected.
+     * @return the hash, or 0 if it was not computed
+     */
+    public int getSubtreeHash() {
+        return subtreeHash;
+    }
+
+    public void setSubtreeHash(int subtreeHash) {
+        this.subtreeHash = subtreeHash;
+    }
+
+    /**
+     * Returns the number of text nodes below this tag, as counted by the
+     * {@link DomTreeBuilder} along with the {@link #getSubtreeHash() subtree
+     * hash}.
+     * @return the number of text nodes, or 0 if they were not counted
+     */
+    public int getTextNodeCount() {
+        return textNodeCount;
+    }
+
+    public void setTextNodeCount(int textNodeCount) {
+        this.textNodeCount = textNodeCount;
+    }
+
     /**
      * Produces <code>String</code> for the opening HTML tag for this node.
      * Includes the attributes. This probably doesn't work for image tag.
@@ -412,48 +491,17 @@ public class TagNode extends Node implements Iterable<Node> {
         children.remove(node);
     }
 
-    //block tags
-    private static Set<String> blocks = new HashSet<String>();
-    static {
-        blocks.add("html");
-        blocks.add("body");
-        blocks.add("p");
-        blocks.add("blockquote");
-        blocks.add("h1");
-        blocks.add("h2");
-        blocks.add("h3");
-        blocks.add("h4");
-        blocks.add("h5");
-        blocks.add("pre");
-        blocks.add("div");
-        blocks.add("ul");
-        blocks.add("ol");
-        blocks.add("li");
-        blocks.add("table");
-        blocks.add("tbody");
-        blocks.add("tr");
-        blocks.add("td");
-        blocks.add("th");
-        blocks.add("br");
-        blocks.add("thead");
-        blocks.add("tfoot");
-    }
-
     public static boolean isBlockLevel(String qName) {
-        return blocks.contains(qName.toLowerCase());
+        return ElementDescriptor.forName(qName).isBlockLevel();
     }
 
     public static boolean isBlockLevel(Node node) {
-        try {
-            TagNode tagnode = (TagNode) node;
-            return isBlockLevel(tagnode.getQName());
-        } catch (ClassCastException e) {
-            return false;
-        }
+        return node instanceof TagNode
+                && ((TagNode) node).descriptor.isBlockLevel();
     }
 
     public boolean isBlockLevel() {
-        return isBlockLevel(this);
+        return descriptor.isBlockLevel();
     }
 
     public static boolean isInline(String qName) {
@@ -465,7 +513,7 @@ public class TagNode extends Node implements Iterable<Node> {
     }
 
     public boolean isInline() {
-        return isInline(this);
+        return descriptor.isInline();
     }
 
     @Override
@@ -543,7 +591,7 @@ public class TagNode extends Node implements Iterable<Node> {
     }
 
     public boolean isPre() {
-        return getQName().equalsIgnoreCase("pre");
+        return descriptor.isPre();
     }
 
 }
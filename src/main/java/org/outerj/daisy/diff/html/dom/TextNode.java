@@ -30,6 +30,8 @@ public class TextNode extends Node implements Cloneable {
 
     private Modification modification;
 
+    private int token = -1;
+
     public TextNode(TagNode parent, String s) {
         super(parent);
         this.modification = new Modification(ModificationType.NONE, ModificationType.NONE);
@@ -76,17 +78,46 @@ public class TextNode extends Node implements Cloneable {
     }
 
     public boolean isSameText(Object other) {
-        if (other == null)
+        if (!(other instanceof TextNode))
             return false;
 
-        TextNode otherTextNode;
-        try {
-            otherTextNode = (TextNode) other;
-        } catch (ClassCastException e) {
+        String text = getText();
+        String otherText = ((TextNode) other).getText();
+        int length = text.length();
+        if (length != otherText.length())
             return false;
+
+        // newlines compare equal to spaces, without copying either string
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            char otherC = otherText.charAt(i);
+            if (c != otherC && (c == '\n' ? ' ' : c) != (otherC == '\n' ? ' ' : otherC))
+                return false;
         }
-        return getText().replace('\n', ' ').equals(
-                otherTextNode.getText().replace('\n', ' '));
+        return true;
+    }
+
+    /**
+     * Returns the normalized form of the text of this node. Two nodes have
+     * the same text according to {@link #isSameText(Object)} if and only if
+     * their token keys are equal.
+     * @return the key under which this node is stored in a
+     * {@link org.outerj.daisy.diff.html.dom.helper.TokenDictionary}
+     */
+    public String getTokenKey() {
+        return getText().replace('\n', ' ');
+    }
+
+    /**
+     * @return the id of the normalized text of this node in the token
+     * dictionary of its tree, or -1 if it was never interned
+     */
+    public int getToken() {
+        return token;
+    }
+
+    public void setToken(int token) {
+        this.token = token;
     }
 
     public void setModification(Modification m) {
@@ -3,6 +3,7 @@ package org.outerj.daisy.diff.html.dom.helper;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.xml.sax.Attributes;
 /**
@@ -44,6 +45,16 @@ public class AttributesMap extends HashMap<String, String> {
 	 */
 	protected static final String NL_TAB_REGEXP = "\\n|\\t";
 
+	private static final Pattern NL_TAB = Pattern.compile(NL_TAB_REGEXP);
+
+	private static final Pattern SPACES = Pattern.compile(SPACE + "++");
+
+	private static final Pattern STYLE_DELIM = Pattern.compile(SPACE
+			+ "*+(?>;" + SPACE + "*+)++");
+
+	private static final Pattern COLON_W_SPACES = Pattern.compile(SPACE
+			+ "*+:" + SPACE + "*+");
+
 	public AttributesMap() {
 		super();
 	}
@@ -362,6 +373,67 @@ public class AttributesMap extends HashMap<String, String> {
 		return result.toString();
 	}
 	
+	/**
+	 * Returns a canonical form of the given attributes, in which the names
+	 * are lower-cased and sorted and the rules of the "style" attribute and
+	 * the classes of the "class" attribute are sorted as well. Two lists of
+	 * attributes have the same canonical form if and only if they are equal
+	 * as specified in {@link AttributesMap#equals(Object)}, so it can be
+	 * computed once and compared many times.
+	 * @param attributes - the attributes of an HTML tag
+	 * @return the canonical form
+	 */
+	public static String canonicalForm(Attributes attributes) {
+		AttributesMap map = new AttributesMap(attributes);
+		String[] names = map.keySet().toArray(new String[map.size()]);
+		Arrays.sort(names);
+		StringBuilder result = new StringBuilder();
+		for (String name : names) {
+			String value = map.get(name);
+			if (name.equals(STYLE_ATTR)) {
+				value = canonicalStyle(value);
+			} else if (name.equals(CLASS_ATTR)) {
+				value = canonicalClasses(value);
+			}
+			//lengths first, so no value can be mistaken for another name
+			result.append(name.length()).append(':').append(name)
+					.append(value.length()).append(':').append(value);
+		}
+		return result.toString();
+	}
+
+	/*
+	 * The rules, split and sorted as in equivalentStyles, each followed by a
+	 * semicolon so no rules and a single empty rule differ.
+	 */
+	private static String canonicalStyle(String style) {
+		style = SPACES.matcher(NL_TAB.matcher(style).replaceAll(SPACE))
+				.replaceAll(SPACE).trim();
+		String[] styleRules = STYLE_DELIM.split(style);
+		Arrays.sort(styleRules);
+		StringBuilder result = new StringBuilder(style.length() + 1);
+		for (String styleRule : styleRules) {
+			result.append(COLON_W_SPACES.matcher(styleRule).replaceFirst(":"))
+					.append(';');
+		}
+		return result.toString();
+	}
+
+	/*
+	 * The classes, split and sorted as in sameClassSet, each followed by a
+	 * space.
+	 */
+	private static String canonicalClasses(String classes) {
+		String[] classNames = SPACES.split(NL_TAB.matcher(classes).replaceAll(
+				SPACE).trim());
+		Arrays.sort(classNames);
+		StringBuilder result = new StringBuilder(classes.length() + 1);
+		for (String className : classNames) {
+			result.append(className).append(SPACE);
+		}
+		return result.toString();
+	}
+
 	//just for a quick test
 	public static void main(String[] args){
 		String s1 = "margin-left:50px;font-size:16pt;";
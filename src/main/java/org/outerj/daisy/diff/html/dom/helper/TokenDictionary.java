@@ -0,0 +1,56 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html.dom.helper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns a unique int id to every distinct normalized word. Two
+ * {@link org.outerj.daisy.diff.html.dom.TextNode}s whose words were interned
+ * in the same dictionary have the same text if and only if they have the same
+ * token id, so the differencer can compare ints instead of strings.
+ * <p>
+ * To be useful, the dictionary must be shared by the
+ * {@link org.outerj.daisy.diff.html.dom.DomTreeBuilder}s of all documents
+ * that are compared with each other.
+ */
+public class TokenDictionary {
+
+    private final Map<String, Integer> tokens = new HashMap<String, Integer>();
+
+    /**
+     * Returns the id of the given normalized word, assigning a new one if the
+     * word was not seen before.
+     * @param key - the normalized word
+     * @return the token id, never negative
+     */
+    public synchronized int intern(String key) {
+        Integer token = tokens.get(key);
+        if (token == null) {
+            token = tokens.size();
+            tokens.put(key, token);
+        }
+        return token;
+    }
+
+    /**
+     * @return the number of distinct words in this dictionary
+     */
+    public synchronized int size() {
+        return tokens.size();
+    }
+}
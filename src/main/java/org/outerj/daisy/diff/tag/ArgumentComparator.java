@@ -48,13 +48,13 @@ public class ArgumentComparator implements IAtomSplitter {
                 }
                 atoms.add(new TextAtom("" + c));
                 currentWord.setLength(0);
-            } else if (DelimiterAtom.isValidDelimiter("" + c)) {
+            } else if (DelimiterAtom.isValidDelimiter(c)) {
                 // a delimiter
                 if (currentWord.length() > 0) {
                     atoms.add(new TextAtom(currentWord.toString()));
                     currentWord.setLength(0);
                 }
-                atoms.add(new DelimiterAtom(c));
+                atoms.add(DelimiterAtom.valueOf(c));
             } else {
                 currentWord.append(c);
             }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.tag;
+
+import java.util.Arrays;
+
+/**
+ * Assigns a unique int id to every distinct atom text, and keeps a single
+ * {@link Atom} per id. Words and tags that occur many times are looked up by
+ * their characters in the source, so no string is created for them after
+ * the first time.
+ * <p>
+ * Two atoms split with the same table have the same text if and only if
+ * they have the same id, so the {@link TagComparator}s of the documents that
+ * are compared should share their table. A table must not be used by
+ * several threads at the same time.
+ */
+public class AtomTable {
+
+    private Atom[] atoms = new Atom[256];
+
+    private int[] hashes = new int[256];
+
+    private int size = 0;
+
+    // the id plus one of the atom in every slot, or 0 for an empty slot
+    private int[] slots = new int[512];
+
+    /**
+     * Returns the id of the atom with the given text, creating the atom if
+     * the text was not seen before.
+     * @param s - the source text
+     * @param start - the start of the atom in the source
+     * @param end - the end of the atom in the source
+     * @param tag - whether the atom is a tag
+     * @return the atom id, never negative
+     */
+    public int intern(CharSequence s, int start, int end, boolean tag) {
+        int hash = tag ? 1 : 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                id = add(createAtom(s, start, end, tag), hash);
+                slots[slot] = id + 1;
+                if (2 * size > slots.length)
+                    rehash();
+                return id;
+            }
+            if (hashes[id] == hash && equals(atoms[id], s, start, end, tag))
+                return id;
+        }
+    }
+
+    public Atom getAtom(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("There is no Atom with id "
+                    + id);
+        return atoms[id];
+    }
+
+    /**
+     * @return the number of distinct atoms in this table
+     */
+    public int size() {
+        return size;
+    }
+
+    private static Atom createAtom(CharSequence s, int start, int end,
+            boolean tag) {
+        if (tag)
+            return new TagAtom(s.subSequence(start, end).toString());
+        if (end - start == 1 && DelimiterAtom.isValidDelimiter(s.charAt(start)))
+            return DelimiterAtom.valueOf(s.charAt(start));
+        return new TextAtom(s.subSequence(start, end).toString());
+    }
+
+    private static boolean equals(Atom atom, CharSequence s, int start,
+            int end, boolean tag) {
+        String text = atom.getFullText();
+        if (text.length() != end - start || (atom instanceof TagAtom) != tag)
+            return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != s.charAt(start + i))
+                return false;
+        }
+        return true;
+    }
+
+    private int add(Atom atom, int hash) {
+        if (size == atoms.length) {
+            atoms = Arrays.copyOf(atoms, 2 * size);
+            hashes = Arrays.copyOf(hashes, 2 * size);
+        }
+        atoms[size] = atom;
+        hashes[size] = hash;
+        return size++;
+    }
+
+    private void rehash() {
+        slots = new int[2 * slots.length];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+}
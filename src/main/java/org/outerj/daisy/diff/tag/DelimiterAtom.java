@@ -20,8 +20,29 @@ package org.outerj.daisy.diff.tag;
  */
 public class DelimiterAtom extends TextAtom {
 
+    private static final DelimiterAtom[] ATOMS = new DelimiterAtom[128];
+
+    static {
+        for (char c = 0; c < ATOMS.length; c++) {
+            if (isValidDelimiter(c))
+                ATOMS[c] = new DelimiterAtom(c);
+        }
+    }
+
     public DelimiterAtom(char c) {
-        super("" + c);
+        super(String.valueOf(c));
+    }
+
+    /**
+     * Atoms are never changed, so every delimiter can be represented by the
+     * same instance.
+     * @return the shared atom of the given delimiter
+     * @throws IllegalArgumentException if the char is not a delimiter
+     */
+    public static DelimiterAtom valueOf(char c) {
+        if (c < ATOMS.length && ATOMS[c] != null)
+            return ATOMS[c];
+        return new DelimiterAtom(c);
     }
 
     public static boolean isValidDelimiter(String s) {
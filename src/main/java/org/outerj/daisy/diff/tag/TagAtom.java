@@ -24,10 +24,13 @@ public class TagAtom implements Atom {
 
     private String internalIdentifiers = "";
 
+    private String fullText;
+
     public TagAtom(String s) {
         if (!isValidAtom(s))
             throw new IllegalArgumentException(
                     "The given string is not a valid tag");
+        fullText = s;
         s = s.substring(1, s.length() - 1);
 
         if (s.indexOf(' ') > 0) {
@@ -56,11 +59,12 @@ public class TagAtom implements Atom {
                 && s.length() >= 3;
     }
 
+    /**
+     * @return the tag as it was given, which is what a {@link TagComparator}
+     * cut out of its source
+     */
     public String getFullText() {
-        String s = "<" + identifier;
-        if (hasInternalIdentifiers())
-            s += " " + internalIdentifiers;
-        return s += ">";
+        return fullText;
     }
 
     public boolean isValidAtom(String s) {
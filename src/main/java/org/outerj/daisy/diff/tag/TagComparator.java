@@ -20,108 +20,222 @@ package org.outerj.daisy.diff.tag;
  * comparator is used specifically for HTML documents.
  */
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.compare.rangedifferencer.IRangeComparator;
 
 public class TagComparator implements IAtomSplitter {
 
-    private List<Atom> atoms = new ArrayList<Atom>(50);
+    private final CharSequence text;
+
+    private final AtomTable table;
+
+    // the id of every atom in the table
+    private int[] ids = new int[64];
+
+    // the start of every atom in the text, followed by the end of the text
+    private int[] offsets = new int[65];
+
+    private int size = 0;
 
     public TagComparator(String s) {
-        generateAtoms(s);
+        this(s, new AtomTable());
     }
 
     public TagComparator(StringBuilder s) {
-        generateAtoms(s.toString());
+        this(s.toString(), new AtomTable());
+    }
+
+    /**
+     * Splits the remaining characters of a buffer. They are not copied, so
+     * the buffer must not be changed while the comparator is used.
+     */
+    public TagComparator(CharBuffer s) {
+        this(s, new AtomTable());
+    }
+
+    /**
+     * Splits a range of an array. It is not copied, so it must not be
+     * changed while the comparator is used.
+     */
+    public TagComparator(char[] s, int start, int length) {
+        this(CharBuffer.wrap(s, start, length), new AtomTable());
     }
 
     public TagComparator(BufferedReader in) throws IOException {
-        StringBuilder sb = new StringBuilder();
-
-        boolean allRead = false;
-        while (!allRead) {
-            int result = in.read();
-            if (result >= 0) {
-                sb.append((char) result);
-            } else {
-                generateAtoms(sb.toString());
-                allRead = true;
-            }
+        this(in, new AtomTable());
+    }
+
+    public TagComparator(BufferedReader in, AtomTable table)
+            throws IOException {
+        this(read(in), table);
+    }
+
+    /**
+     * Splits a file, which is mapped in memory and decoded at once instead of
+     * being read through a stream.
+     * @param file - the file to split
+     * @param charsetName - the encoding of the file
+     */
+    public TagComparator(File file, String charsetName) throws IOException {
+        this(decode(file, charsetName), new AtomTable());
+    }
+
+    /**
+     * Splits text into atoms that are kept in the given table. The atoms of
+     * comparators that share a table are compared by their id first.
+     * @param s - the text, which must not be changed while the comparator is
+     * used
+     * @param table - the table of the atoms
+     */
+    public TagComparator(CharSequence s, AtomTable table) {
+        text = s;
+        this.table = table;
+        generateAtoms(s);
+    }
+
+    private static CharBuffer read(BufferedReader in) throws IOException {
+        char[] buffer = new char[8192];
+        int length = 0;
+        int read;
+        while ((read = in.read(buffer, length, buffer.length - length)) >= 0) {
+            length += read;
+            if (length == buffer.length)
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+        }
+        return CharBuffer.wrap(buffer, 0, length);
+    }
+
+    private static CharBuffer decode(File file, String charsetName)
+            throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return Charset.forName(charsetName).decode(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+                            .size()));
+        } finally {
+            in.close();
         }
     }
 
     public List<Atom> getAtoms() {
-        return new ArrayList<Atom>(atoms);
+        List<Atom> atoms = new ArrayList<Atom>(size);
+        for (int i = 0; i < size; i++) {
+            atoms.add(table.getAtom(ids[i]));
+        }
+        return atoms;
     }
 
-    private void generateAtoms(String s) {
-        if (atoms.size() > 0)
+    /*
+     * Splits the text in one pass. A '<' starts a tag if the first '>' after
+     * it comes before any other '<'. The position of the next '>' is kept
+     * while it lies ahead, so each character is looked at a bounded number
+     * of times however many '<' there are.
+     */
+    private void generateAtoms(CharSequence s) {
+        if (size > 0)
             throw new IllegalStateException("Atoms can only be generated once");
 
-        StringBuilder currentWord = new StringBuilder(100);
+        int length = s.length();
+        // the start of the current word, or -1 if there is none
+        int wordStart = -1;
+        // the first '>' at or after the current position, or length if none
+        int close = -1;
 
-        for (int i = 0; i < s.length(); i++) {
+        for (int i = 0; i < length; i++) {
             char c = s.charAt(i);
 
-            if (c == '<'
-                    && TagAtom
-                            .isValidTag(s.substring(i, s.indexOf('>', i) + 1))) {
-                // a tag
-                if (currentWord.length() > 0) {
-                    atoms.add(new TextAtom(currentWord.toString()));
-                    currentWord.setLength(0);
+            if (c == '<') {
+                if (close < i) {
+                    close = i + 1;
+                    while (close < length && s.charAt(close) != '>') {
+                        close++;
+                    }
                 }
-
-                int end = s.indexOf('>', i);
-                atoms.add(new TagAtom(s.substring(i, end + 1)));
-                i = end;
-            } else if (DelimiterAtom.isValidDelimiter("" + c)) {
+                if (close < length && close - i >= 2
+                        && !containsOpen(s, i + 1, close)) {
+                    // a tag
+                    if (wordStart >= 0) {
+                        add(wordStart, i, false);
+                        wordStart = -1;
+                    }
+                    add(i, close + 1, true);
+                    i = close;
+                    continue;
+                }
+            }
+            if (DelimiterAtom.isValidDelimiter(c)) {
                 // a delimiter
-                if (currentWord.length() > 0) {
-                    atoms.add(new TextAtom(currentWord.toString()));
-                    currentWord.setLength(0);
+                if (wordStart >= 0) {
+                    add(wordStart, i, false);
+                    wordStart = -1;
                 }
 
-                atoms.add(new DelimiterAtom(c));
-            } else {
+                add(i, i + 1, false);
+            } else if (wordStart < 0) {
                 // something else
-                currentWord.append(c);
+                wordStart = i;
             }
         }
-        if (currentWord.length() > 0) {
-            atoms.add(new TextAtom(currentWord.toString()));
-            currentWord.setLength(0);
+        if (wordStart >= 0) {
+            add(wordStart, length, false);
         }
+        offsets[size] = length;
     }
 
+    private void add(int start, int end, boolean tag) {
+        if (size + 1 == offsets.length) {
+            ids = Arrays.copyOf(ids, 2 * size);
+            offsets = Arrays.copyOf(offsets, 2 * size + 1);
+        }
+        ids[size] = table.intern(text, start, end, tag);
+        offsets[size++] = start;
+    }
+
+    /*
+     * The scan stops at the first '<', where the next scan starts, so no
+     * character is scanned twice.
+     */
+    private static boolean containsOpen(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == '<')
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * The atoms cover the text without gaps, so this is a slice of the text.
+     */
     public String substring(int startAtom, int endAtom) {
         if (startAtom == endAtom)
             return "";
-        else {
-            StringBuilder result = new StringBuilder();
-            for (int i = startAtom; i < endAtom; i++) {
-                result.append(atoms.get(i).getFullText());
-            }
-            return result.toString();
-        }
+        return text.subSequence(offsets[startAtom], offsets[endAtom])
+                .toString();
     }
 
     public String substring(int startAtom) {
-        return substring(startAtom, atoms.size());
+        return substring(startAtom, size);
     }
 
     public Atom getAtom(int i) {
-        if (i < 0 || i >= atoms.size())
+        if (i < 0 || i >= size)
             throw new IndexOutOfBoundsException("There is no Atom with index "
                     + i);
-        return atoms.get(i);
+        return table.getAtom(ids[i]);
     }
 
     public int getRangeCount() {
-        return atoms.size();
+        return size;
     }
 
     public boolean rangesEqual(int thisIndex, IRangeComparator other,
@@ -132,6 +246,9 @@ public class TagComparator implements IAtomSplitter {
         } catch (ClassCastException e) {
             return false;
         }
+        // the same text, so the same identifier
+        if (tc2.table == table && tc2.ids[otherIndex] == ids[thisIndex])
+            return true;
         return tc2.getAtom(otherIndex).equalsIdentifier(getAtom(thisIndex));
     }
 
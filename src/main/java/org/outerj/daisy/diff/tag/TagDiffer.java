@@ -15,9 +15,10 @@
  */
 package org.outerj.daisy.diff.tag;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.compare.internal.LCSSettings;
 import org.eclipse.compare.rangedifferencer.RangeDifference;
 import org.eclipse.compare.rangedifferencer.RangeDifferencer;
 import org.outerj.daisy.diff.output.TextDiffOutput;
@@ -33,8 +34,23 @@ public class TagDiffer implements TextDiffer{
 
     private TextDiffOutput output;
 
+    private LCSSettings settings;
+
     public TagDiffer(TextDiffOutput output) {
+        this(output, new LCSSettings());
+    }
+
+    /**
+     * Creates a differ that finds the differences between the atoms with the
+     * given settings, e.g. to select the {@link LCSSettings.Algorithm} used.
+     * The arguments of changed tags are always compared with the default
+     * settings.
+     * @param output - the output to write the differences to
+     * @param settings - the settings for the range differencer
+     */
+    public TagDiffer(TextDiffOutput output, LCSSettings settings) {
         this.output = output;
+        this.settings = settings;
     }
 
     /**
@@ -44,7 +60,7 @@ public class TagDiffer implements TextDiffer{
             throws Exception {
 
         RangeDifference[] differences = RangeDifferencer.findDifferences(
-                leftComparator, rightComparator);
+                settings, leftComparator, rightComparator);
 
         List<RangeDifference> pdifferences = preProcess(differences,
                 leftComparator);
@@ -52,25 +68,21 @@ public class TagDiffer implements TextDiffer{
         int rightAtom = 0;
         int leftAtom = 0;
 
-        for (int i = 0; i < pdifferences.size(); i++) {
-
-            parseNoChange(leftAtom, pdifferences.get(i).leftStart(), rightAtom,
-                    pdifferences.get(i).rightStart(), leftComparator,
-                    rightComparator);
+        for (RangeDifference d : pdifferences) {
 
-            String leftString = leftComparator.substring(pdifferences.get(i)
-                    .leftStart(), pdifferences.get(i).leftEnd());
-            String rightString = rightComparator.substring(pdifferences.get(i)
-                    .rightStart(), pdifferences.get(i).rightEnd());
+            parseNoChange(leftAtom, d.leftStart(), rightAtom, d.rightStart(),
+                    leftComparator, rightComparator);
 
-            if (pdifferences.get(i).leftLength() > 0)
-                output.addRemovedPart(leftString);
+            if (d.leftLength() > 0)
+                output.addRemovedPart(leftComparator.substring(d.leftStart(),
+                        d.leftEnd()));
 
-            if (pdifferences.get(i).rightLength() > 0)
-                output.addAddedPart(rightString);
+            if (d.rightLength() > 0)
+                output.addAddedPart(rightComparator.substring(d.rightStart(),
+                        d.rightEnd()));
 
-            rightAtom = pdifferences.get(i).rightEnd();
-            leftAtom = pdifferences.get(i).leftEnd();
+            rightAtom = d.rightEnd();
+            leftAtom = d.leftEnd();
 
         }
         if (rightAtom < rightComparator.getRangeCount())
@@ -84,27 +96,25 @@ public class TagDiffer implements TextDiffer{
             int endRight, IAtomSplitter leftComparator,
             IAtomSplitter rightComparator) throws Exception {
 
-        StringBuilder sb = new StringBuilder();
-
         /*
          * We can assume that the LCS is correct and that there are exacly as
          * many atoms left and right
          */
         while (beginLeft < endLeft) {
 
+            int clearStart = beginRight;
             while (beginLeft < endLeft
                     && !rightComparator.getAtom(beginRight)
                             .hasInternalIdentifiers()
                     && !leftComparator.getAtom(beginLeft)
                             .hasInternalIdentifiers()) {
-                sb.append(rightComparator.getAtom(beginRight).getFullText());
                 beginRight++;
                 beginLeft++;
             }
 
-            if (sb.length() > 0) {
-                output.addClearPart(sb.toString());
-                sb.setLength(0);
+            if (beginRight > clearStart) {
+                output.addClearPart(rightComparator.substring(clearStart,
+                        beginRight));
             }
 
             if (beginLeft < endLeft) {
@@ -120,23 +130,21 @@ public class TagDiffer implements TextDiffer{
                         2);
 
                 int rightAtom2 = 0;
-                for (int j = 0; j < pdifferences2.size(); j++) {
-                    if (rightAtom2 < pdifferences2.get(j).rightStart()) {
+                for (RangeDifference d : pdifferences2) {
+                    if (rightAtom2 < d.rightStart()) {
                         output.addClearPart(rightComparator2.substring(
-                                rightAtom2, pdifferences2.get(j).rightStart()));
+                                rightAtom2, d.rightStart()));
                     }
-                    if (pdifferences2.get(j).leftLength() > 0) {
-                        output.addRemovedPart(leftComparator2.substring(
-                                pdifferences2.get(j).leftStart(), pdifferences2
-                                        .get(j).leftEnd()));
+                    if (d.leftLength() > 0) {
+                        output.addRemovedPart(leftComparator2.substring(d
+                                .leftStart(), d.leftEnd()));
                     }
-                    if (pdifferences2.get(j).rightLength() > 0) {
-                        output.addAddedPart(rightComparator2.substring(
-                                pdifferences2.get(j).rightStart(),
-                                pdifferences2.get(j).rightEnd()));
+                    if (d.rightLength() > 0) {
+                        output.addAddedPart(rightComparator2.substring(d
+                                .rightStart(), d.rightEnd()));
                     }
 
-                    rightAtom2 = pdifferences2.get(j).rightEnd();
+                    rightAtom2 = d.rightEnd();
 
                 }
                 if (rightAtom2 < rightComparator2.getRangeCount())
@@ -152,7 +160,8 @@ public class TagDiffer implements TextDiffer{
     private List<RangeDifference> preProcess(RangeDifference[] differences,
             IAtomSplitter leftComparator) {
 
-        List<RangeDifference> newRanges = new LinkedList<RangeDifference>();
+        List<RangeDifference> newRanges = new ArrayList<RangeDifference>(
+                differences.length);
 
         for (int i = 0; i < differences.length; i++) {
 
@@ -208,7 +217,8 @@ public class TagDiffer implements TextDiffer{
     private List<RangeDifference> preProcess(RangeDifference[] differences,
             int span) {
 
-        List<RangeDifference> newRanges = new LinkedList<RangeDifference>();
+        List<RangeDifference> newRanges = new ArrayList<RangeDifference>(
+                differences.length);
 
         for (int i = 0; i < differences.length; i++) {
 
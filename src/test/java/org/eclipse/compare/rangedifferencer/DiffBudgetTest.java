@@ -0,0 +1,96 @@
+package org.eclipse.compare.rangedifferencer;
+
+import static org.eclipse.compare.rangedifferencer.HistogramDifferencerTest.assertValidScript;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.eclipse.compare.rangedifferencer.HistogramDifferencerTest.TokenComparator;
+import org.eclipse.compare.rangedifferencer.LinearDifferencerTest.IntComparator;
+import org.junit.Test;
+
+/**
+ * Checks that the differencers degrade to valid, coarser edit scripts when
+ * their {@link DiffBudget} is exhausted.
+ */
+public class DiffBudgetTest {
+
+    @Test
+    public void testMaxEditDistance() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            int[] left = new int[random.nextInt(50)];
+            for (int j = 0; j < left.length; j++) {
+                left[j] = random.nextInt(5);
+            }
+            int[] right = new int[random.nextInt(50)];
+            for (int j = 0; j < right.length; j++) {
+                right[j] = random.nextInt(5);
+            }
+            int maxEditDistance = 1 + random.nextInt(10);
+
+            DiffBudget oldBudget = new DiffBudget(0, maxEditDistance);
+            RangeDifference[] differences = OldDifferencer.findDifferences(
+                    null, oldBudget, new IntComparator(left),
+                    new IntComparator(right));
+            assertValidScript(left, right, differences);
+
+            DiffBudget linearBudget = new DiffBudget(0, maxEditDistance);
+            assertEquals(toString(differences), toString(LinearDifferencer
+                    .findDifferences(null, linearBudget, new IntComparator(
+                            left), new IntComparator(right))));
+            assertEquals(oldBudget.isDegraded(), linearBudget.isDegraded());
+
+            int editDistance = 0;
+            for (RangeDifference difference : OldDifferencer.findDifferences(
+                    null, new IntComparator(left), new IntComparator(right))) {
+                editDistance += difference.leftLength()
+                        + difference.rightLength();
+            }
+            assertEquals(editDistance > maxEditDistance, oldBudget
+                    .isDegraded());
+        }
+    }
+
+    @Test
+    public void testUnlimitedBudget() {
+        int[] left = { 1, 2, 3, 4, 5, 6 };
+        int[] right = { 1, 3, 4, 7, 6, 8 };
+        DiffBudget budget = new DiffBudget(0, 0);
+        assertEquals(toString(OldDifferencer.findDifferences(null,
+                new IntComparator(left), new IntComparator(right))),
+                toString(OldDifferencer.findDifferences(null, budget,
+                        new IntComparator(left), new IntComparator(right))));
+        assertFalse(budget.isDegraded());
+    }
+
+    @Test
+    public void testTimeLimit() throws InterruptedException {
+        int[] left = { 1, 2, 3, 4, 5, 6 };
+        int[] right = { 1, 3, 4, 7, 6, 8 };
+        DiffBudget budget = new DiffBudget(1, 0);
+        Thread.sleep(10);
+
+        RangeDifference[] differences = OldDifferencer.findDifferences(null,
+                budget, new IntComparator(left), new IntComparator(right));
+        assertTrue(budget.isDegraded());
+        assertValidScript(left, right, differences);
+        assertEquals(1, differences.length);
+        assertEquals(1, differences[0].leftStart());
+
+        differences = HistogramDifferencer.findDifferences(null, budget,
+                new TokenComparator(left), new TokenComparator(right));
+        assertValidScript(left, right, differences);
+        assertEquals(1, differences.length);
+    }
+
+    private static String toString(RangeDifference[] differences) {
+        StringBuilder result = new StringBuilder();
+        for (RangeDifference difference : differences) {
+            result.append(difference).append('\n');
+        }
+        return result.toString();
+    }
+}
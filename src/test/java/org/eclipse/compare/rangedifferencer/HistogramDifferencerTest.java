@@ -0,0 +1,178 @@
+package org.eclipse.compare.rangedifferencer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link HistogramDifferencer} finds valid edit scripts that are
+ * anchored on rare entities.
+ */
+public class HistogramDifferencerTest {
+
+    /**
+     * Compares sequences of ints that are their own tokens.
+     */
+    static class TokenComparator implements ITokenComparator {
+
+        private final int[] values;
+
+        TokenComparator(int[] values) {
+            this.values = values;
+        }
+
+        public int getRangeCount() {
+            return values.length;
+        }
+
+        public boolean rangesEqual(int thisIndex, IRangeComparator other,
+                int otherIndex) {
+            return values[thisIndex] == ((TokenComparator) other).values[otherIndex];
+        }
+
+        public boolean skipRangeComparison(int length, int maxLength,
+                IRangeComparator other) {
+            return false;
+        }
+
+        public int[] getTokens(IRangeComparator other) {
+            return values;
+        }
+    }
+
+    @Test
+    public void testValidScripts() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int alphabet = 1 + random.nextInt(30);
+            int[] left = new int[random.nextInt(60)];
+            for (int j = 0; j < left.length; j++) {
+                left[j] = random.nextInt(alphabet);
+            }
+            int[] right = mutate(random, left, alphabet);
+            assertValidScript(left, right, HistogramDifferencer
+                    .findDifferences(null, new TokenComparator(left),
+                            new TokenComparator(right)));
+        }
+    }
+
+    @Test
+    public void testAnchorsOnRareEntities() {
+        // 7 and 8 occur once, so the common 1 1 is not aligned with the
+        // start of the left sequence
+        int[] left = { 1, 1, 7, 2, 8 };
+        int[] right = { 7, 2, 8, 1, 1 };
+        RangeDifference[] differences = HistogramDifferencer.findDifferences(
+                null, new TokenComparator(left), new TokenComparator(right));
+        assertValidScript(left, right, differences);
+        assertEquals(2, differences.length);
+        assertEquals(0, differences[0].leftStart());
+        assertEquals(2, differences[0].leftLength());
+        assertEquals(0, differences[0].rightLength());
+        assertEquals(5, differences[1].leftStart());
+        assertEquals(3, differences[1].rightStart());
+        assertEquals(2, differences[1].rightLength());
+    }
+
+    @Test
+    public void testChainLengthLimit() {
+        // 1 occurs 64 times, so it is an anchor, and the first one found is
+        // its last occurrence
+        RangeDifference[] differences = findDifferencesWithOnes(64);
+        assertEquals(2, differences.length);
+        assertEquals(63, differences[0].rightLength());
+        assertEquals(0, differences[1].rightLength());
+
+        // 1 occurs 65 times, so the region is compared with Myers' algorithm,
+        // which keeps the first occurrence
+        differences = findDifferencesWithOnes(65);
+        assertEquals(2, differences.length);
+        assertEquals(0, differences[0].rightLength());
+        assertEquals(64, differences[1].rightLength());
+    }
+
+    private static RangeDifference[] findDifferencesWithOnes(int count) {
+        int[] left = { 2, 1, 2 };
+        int[] right = new int[count];
+        Arrays.fill(right, 1);
+        RangeDifference[] differences = HistogramDifferencer.findDifferences(
+                null, new TokenComparator(left), new TokenComparator(right));
+        assertValidScript(left, right, differences);
+        return differences;
+    }
+
+    @Test
+    public void testHashTokens() {
+        int[] left = { -7, Integer.MAX_VALUE, 42, Integer.MIN_VALUE };
+        int[] right = { -7, 42, Integer.MIN_VALUE, 3 };
+        RangeDifference[] differences = HistogramDifferencer.findDifferences(
+                null, new TokenComparator(left), new TokenComparator(right));
+        assertValidScript(left, right, differences);
+        assertEquals(2, differences.length);
+    }
+
+    @Test
+    public void testEmptyAndIdenticalSequences() {
+        assertEquals(0, HistogramDifferencer.findDifferences(null,
+                new TokenComparator(new int[0]),
+                new TokenComparator(new int[0])).length);
+        assertEquals(0, HistogramDifferencer.findDifferences(null,
+                new TokenComparator(new int[] { 1, 2, 3 }),
+                new TokenComparator(new int[] { 1, 2, 3 })).length);
+        RangeDifference[] differences = HistogramDifferencer.findDifferences(
+                null, new TokenComparator(new int[0]), new TokenComparator(
+                        new int[] { 1, 2 }));
+        assertEquals(1, differences.length);
+        assertEquals(2, differences[0].rightLength());
+    }
+
+    /*
+     * The ranges between the differences must be equal, and the differences
+     * must be ordered, non-empty and not adjacent.
+     */
+    static void assertValidScript(int[] left, int[] right,
+            RangeDifference[] differences) {
+        int leftIndex = 0;
+        int rightIndex = 0;
+        for (RangeDifference difference : differences) {
+            assertTrue(difference.leftLength() > 0
+                    || difference.rightLength() > 0);
+            assertTrue(difference.leftStart() - leftIndex > 0
+                    || leftIndex == 0 && rightIndex == 0);
+            assertEquals(difference.leftStart() - leftIndex, difference
+                    .rightStart()
+                    - rightIndex);
+            while (leftIndex < difference.leftStart()) {
+                assertEquals(left[leftIndex++], right[rightIndex++]);
+            }
+            leftIndex = difference.leftEnd();
+            rightIndex = difference.rightEnd();
+        }
+        assertEquals(left.length - leftIndex, right.length - rightIndex);
+        while (leftIndex < left.length) {
+            assertEquals(left[leftIndex++], right[rightIndex++]);
+        }
+    }
+
+    private static int[] mutate(Random random, int[] values, int alphabet) {
+        StringBuilder result = new StringBuilder();
+        for (int value : values) {
+            int dice = random.nextInt(10);
+            if (dice == 0) {
+                continue; // delete
+            } else if (dice == 1) {
+                result.append((char) random.nextInt(alphabet)); // insert
+            }
+            result.append((char) value);
+        }
+        int[] mutated = new int[result.length()];
+        for (int i = 0; i < mutated.length; i++) {
+            mutated[i] = result.charAt(i);
+        }
+        return mutated;
+    }
+}
@@ -0,0 +1,102 @@
+package org.eclipse.compare.rangedifferencer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link LinearDifferencer} finds exactly the edit scripts of
+ * {@link OldDifferencer}.
+ */
+public class LinearDifferencerTest {
+
+    /**
+     * Compares sequences of ints.
+     */
+    static class IntComparator implements IRangeComparator {
+
+        private final int[] values;
+
+        IntComparator(int[] values) {
+            this.values = values;
+        }
+
+        public int getRangeCount() {
+            return values.length;
+        }
+
+        public boolean rangesEqual(int thisIndex, IRangeComparator other,
+                int otherIndex) {
+            return values[thisIndex] == ((IntComparator) other).values[otherIndex];
+        }
+
+        public boolean skipRangeComparison(int length, int maxLength,
+                IRangeComparator other) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testSameScriptsAsOldDifferencer() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            // a small alphabet gives many edit scripts of minimal length
+            int alphabet = 1 + random.nextInt(6);
+            int[] left = randomSequence(random, random.nextInt(40), alphabet);
+            int[] right = mutate(random, left, alphabet);
+            assertSameScript(left, right);
+        }
+    }
+
+    @Test
+    public void testEmptyAndIdenticalSequences() {
+        assertSameScript(new int[0], new int[0]);
+        assertSameScript(new int[0], new int[] { 1, 2 });
+        assertSameScript(new int[] { 1, 2 }, new int[0]);
+        assertSameScript(new int[] { 1, 2, 3 }, new int[] { 1, 2, 3 });
+    }
+
+    private static void assertSameScript(int[] left, int[] right) {
+        RangeDifference[] expected = OldDifferencer.findDifferences(null,
+                new IntComparator(left), new IntComparator(right));
+        RangeDifference[] actual = LinearDifferencer.findDifferences(null,
+                new IntComparator(left), new IntComparator(right));
+        assertEquals(toString(expected), toString(actual));
+    }
+
+    private static int[] randomSequence(Random random, int length, int alphabet) {
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = random.nextInt(alphabet);
+        }
+        return result;
+    }
+
+    private static int[] mutate(Random random, int[] values, int alphabet) {
+        StringBuilder result = new StringBuilder();
+        for (int value : values) {
+            int dice = random.nextInt(10);
+            if (dice == 0) {
+                continue; // delete
+            } else if (dice == 1) {
+                result.append((char) random.nextInt(alphabet)); // insert
+            }
+            result.append((char) value);
+        }
+        int[] mutated = new int[result.length()];
+        for (int i = 0; i < mutated.length; i++) {
+            mutated[i] = result.charAt(i);
+        }
+        return mutated;
+    }
+
+    private static String toString(RangeDifference[] differences) {
+        StringBuilder result = new StringBuilder();
+        for (RangeDifference difference : differences) {
+            result.append(difference).append('\n');
+        }
+        return result.toString();
+    }
+}
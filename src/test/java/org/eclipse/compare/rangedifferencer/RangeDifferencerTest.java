@@ -0,0 +1,110 @@
+package org.eclipse.compare.rangedifferencer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.compare.internal.LCSSettings;
+import org.eclipse.compare.rangedifferencer.HistogramDifferencerTest.TokenComparator;
+import org.junit.Test;
+
+/**
+ * Checks that the three-way comparison finds the same differences with and
+ * without an executor.
+ */
+public class RangeDifferencerTest {
+
+    @Test
+    public void testThreeWayWithExecutor() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertSameDifferences(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testThreeWayWithIdleExecutor() {
+        // an executor that never runs its tasks
+        assertSameDifferences(new Executor() {
+            public void execute(Runnable command) {
+            }
+        });
+    }
+
+    @Test
+    public void testThreeWayWithSaturatedExecutor() throws Exception {
+        // a single busy thread and no queue, so every task is rejected
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0,
+                TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        final Object lock = new Object();
+        try {
+            synchronized (lock) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        synchronized (lock) {
+                        }
+                    }
+                });
+                assertSameDifferences(executor);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameDifferences(Executor executor) {
+        Random random = new Random(42);
+        LCSSettings settings = new LCSSettings();
+        for (int i = 0; i < 200; i++) {
+            int[] ancestor = new int[random.nextInt(60)];
+            for (int j = 0; j < ancestor.length; j++) {
+                ancestor[j] = random.nextInt(8);
+            }
+            int[] left = mutate(random, ancestor);
+            int[] right = mutate(random, ancestor);
+
+            RangeDifference[] expected = RangeDifferencer.findDifferences(
+                    settings, new TokenComparator(ancestor),
+                    new TokenComparator(left), new TokenComparator(right));
+            RangeDifference[] actual = RangeDifferencer.findDifferences(null,
+                    settings, null, executor, new TokenComparator(ancestor),
+                    new TokenComparator(left), new TokenComparator(right));
+            assertEquals(toString(expected), toString(actual));
+        }
+    }
+
+    private static int[] mutate(Random random, int[] values) {
+        StringBuilder result = new StringBuilder();
+        for (int value : values) {
+            int dice = random.nextInt(10);
+            if (dice == 0) {
+                continue; // delete
+            } else if (dice == 1) {
+                result.append((char) random.nextInt(8)); // insert
+            }
+            result.append((char) value);
+        }
+        int[] mutated = new int[result.length()];
+        for (int i = 0; i < mutated.length; i++) {
+            mutated[i] = result.charAt(i);
+        }
+        return mutated;
+    }
+
+    private static String toString(RangeDifference[] differences) {
+        StringBuilder result = new StringBuilder();
+        for (RangeDifference difference : differences) {
+            result.append(difference.kind()).append(' ').append(difference)
+                    .append('\n');
+        }
+        return result.toString();
+    }
+}
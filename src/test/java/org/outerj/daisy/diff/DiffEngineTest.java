@@ -0,0 +1,265 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.outerj.daisy.diff.html.FileBasedTest;
+import org.outerj.daisy.diff.html.TestHelper;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that a {@link DiffEngine} gives the same results as
+ * {@link DaisyDiff}, also when it is used from several threads.
+ */
+public class DiffEngineTest {
+
+    private static final String OLD_HTML = "<html><body><p>This is a blue book</p>"
+            + "<p>Another <b>paragraph</b> here</p></body></html>";
+
+    private static final String NEW_HTML = "<html><body><p>This is a big blue book</p>"
+            + "<p>Another <i>paragraph</i> here</p></body></html>";
+
+    @Test
+    public void sameAsDaisyDiff() throws Exception {
+        DiffConfiguration configuration = new DiffConfiguration();
+        configuration.setCleanup(false);
+        configuration.setLocale(Locale.ENGLISH);
+        DiffEngine engine = new DiffEngine(configuration);
+
+        Recorder expected = new Recorder();
+        DaisyDiff.diffHTML(source(OLD_HTML), source(NEW_HTML), expected,
+                "diff", Locale.ENGLISH);
+        Recorder actual = new Recorder();
+        engine.diffHTML(source(OLD_HTML), source(NEW_HTML), actual);
+        assertEquals(expected.toString(), actual.toString());
+        assertTrue(actual.toString().contains("diff-html-added"));
+
+        expected = new Recorder();
+        DaisyDiff.diffTag(OLD_HTML, NEW_HTML, expected);
+        actual = new Recorder();
+        engine.diffTag(OLD_HTML, NEW_HTML, actual);
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void nativeCleanup() throws Exception {
+        DiffConfiguration configuration = new DiffConfiguration();
+        configuration.setLocale(Locale.ENGLISH);
+        String expected = diffHTML(new DiffEngine(configuration), 2);
+        configuration.setXslCleanup(false);
+        assertEquals(expected, diffHTML(new DiffEngine(configuration), 2));
+    }
+
+    /**
+     * Every pair of documents of the {@link FileBasedTest} data must give
+     * the same output with both cleanups.
+     */
+    @Test
+    public void nativeCleanupOnTestData() throws Exception {
+        DiffConfiguration configuration = new DiffConfiguration();
+        configuration.setLocale(Locale.ENGLISH);
+        configuration.setXslCleanup(true);
+        DiffEngine xslEngine = new DiffEngine(configuration);
+        configuration.setXslCleanup(false);
+        DiffEngine nativeEngine = new DiffEngine(configuration);
+
+        List<Object[]> directories = FileBasedTest.findAllTestDataDirs();
+        assertTrue(directories.size() > 0);
+        for (Object[] directory : directories) {
+            TestHelper helper = new TestHelper((File) directory[0]);
+            String oldHtml = helper.readContents(helper.getOld());
+            String newHtml = helper.readContents(helper.getNew());
+
+            Recorder expected = new Recorder();
+            xslEngine.diffHTML(source(oldHtml), source(newHtml), expected);
+            Recorder actual = new Recorder();
+            nativeEngine.diffHTML(source(oldHtml), source(newHtml), actual);
+            assertEquals("Output for " + directory[0], expected.toString(),
+                    actual.toString());
+        }
+    }
+
+    @Test
+    public void configurationIsCopied() throws Exception {
+        DiffConfiguration configuration = new DiffConfiguration();
+        configuration.setPrefix("first");
+        DiffEngine engine = new DiffEngine(configuration);
+        configuration.setPrefix("second");
+        configuration.getLCSSettings().setUseGreedyMethod(true);
+        assertEquals("first", engine.getPrefix());
+    }
+
+    @Test
+    public void documentCache() throws Exception {
+        DiffConfiguration configuration = new DiffConfiguration();
+        configuration.setLocale(Locale.ENGLISH);
+        String expected = diffHTML(new DiffEngine(configuration), 1);
+
+        ParsedDocumentCache cache = new ParsedDocumentCache(1 << 20);
+        configuration.setDocumentCache(cache);
+        DiffEngine engine = new DiffEngine(configuration);
+        assertEquals(expected, diffHTML(engine, 1));
+        assertEquals(2, cache.size());
+        // the cached trees are not changed by the diff
+        assertEquals(expected, diffHTML(engine, 1));
+        assertEquals(2, cache.size());
+
+        Recorder reversed = new Recorder();
+        engine.diffHTML(source(NEW_HTML), source(OLD_HTML), reversed);
+        assertTrue(reversed.toString().contains("diff-html-removed"));
+        assertEquals(4, cache.size());
+
+        configuration.setDocumentCache(new ParsedDocumentCache(0));
+        assertEquals(expected, diffHTML(new DiffEngine(configuration), 1));
+    }
+
+    @Test
+    public void resultCache() throws Exception {
+        DiffConfiguration configuration = new DiffConfiguration();
+        configuration.setLocale(Locale.ENGLISH);
+        String expected = diffHTML(new DiffEngine(configuration), 1);
+
+        File directory = File.createTempFile("results", "");
+        directory.delete();
+        try {
+            FileDiffResultCache files = new FileDiffResultCache(directory);
+            MemoryDiffResultCache memory = new MemoryDiffResultCache(1 << 20,
+                    files);
+            configuration.setResultCache(memory);
+            DiffEngine engine = new DiffEngine(configuration);
+            assertEquals(expected, diffHTML(engine, 1));
+            assertEquals(expected, diffHTML(engine, 1));
+            assertEquals(1, memory.getStatistics().getHitCount());
+            assertEquals(1, memory.getStatistics().getMissCount());
+            assertEquals(1, directory.list().length);
+
+            // a new process only finds the files
+            memory = new MemoryDiffResultCache(1 << 20, files);
+            configuration.setResultCache(memory);
+            assertEquals(expected, diffHTML(new DiffEngine(configuration), 1));
+            assertEquals(1, memory.getStatistics().getMissCount());
+            assertEquals(1, files.getStatistics().getHitCount());
+            assertEquals(0, files.getStatistics().getErrorCount());
+
+            configuration.setPrefix("other");
+            assertTrue(diffHTML(new DiffEngine(configuration), 1).contains(
+                    "other"));
+            assertEquals(2, directory.list().length);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void concurrentDiffs() throws Exception {
+        DiffConfiguration configuration = new DiffConfiguration();
+        configuration.setLocale(Locale.ENGLISH);
+        final DiffEngine engine = new DiffEngine(configuration);
+        final String expected = diffHTML(engine, 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 40; i++) {
+                final int paragraphs = i % 4;
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return diffHTML(engine, paragraphs);
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                if (i % 4 == 0)
+                    assertEquals(expected, results.get(i).get());
+                else
+                    assertTrue(results.get(i).get().contains("diff-html-added"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * Compares the documents with the given number of extra paragraphs.
+     */
+    private static String diffHTML(DiffEngine engine, int paragraphs)
+            throws Exception {
+        StringBuilder extra = new StringBuilder();
+        for (int i = 0; i < paragraphs; i++) {
+            extra.append("<p>Extra paragraph ").append(i).append("</p>");
+        }
+        Recorder result = new Recorder();
+        engine.diffHTML(source(OLD_HTML.replace("</body>", extra + "</body>")),
+                source(NEW_HTML.replace("</body>", extra + "</body>")), result);
+        return result.toString();
+    }
+
+    private static InputSource source(String html) {
+        return new InputSource(new StringReader(html));
+    }
+
+    /*
+     * Records the elements, attributes and text it receives.
+     */
+    private static class Recorder extends DefaultHandler {
+
+        private final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                Attributes attributes) {
+            events.append('<').append(qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                events.append(' ').append(attributes.getQName(i)).append('=')
+                        .append(attributes.getValue(i));
+            }
+            events.append('>');
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.append("</").append(qName).append('>');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.append(ch, start, length);
+        }
+
+        @Override
+        public String toString() {
+            return events.toString();
+        }
+    }
+}
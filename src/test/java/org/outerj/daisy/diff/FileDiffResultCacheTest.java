@@ -0,0 +1,64 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+/**
+ * Checks that results that cannot be read are treated as missing.
+ */
+public class FileDiffResultCacheTest {
+
+    @Test
+    public void damagedLength() throws Exception {
+        File directory = File.createTempFile("results", "");
+        directory.delete();
+        try {
+            FileDiffResultCache cache = new FileDiffResultCache(directory);
+            byte[] result = { 1, 2, 3 };
+            cache.put("key", result);
+            assertArrayEquals(result, cache.get("key"));
+
+            // the length follows the magic number and the key
+            File file = directory.listFiles()[0];
+            int lengthOffset = 4 + 2 + "key".length();
+            for (int length : new int[] { -1, Integer.MAX_VALUE, 4 }) {
+                RandomAccessFile out = new RandomAccessFile(file, "rw");
+                try {
+                    out.seek(lengthOffset);
+                    out.writeInt(length);
+                } finally {
+                    out.close();
+                }
+                assertNull(cache.get("key"));
+            }
+            assertEquals(3, cache.getStatistics().getErrorCount());
+            assertEquals(3, cache.getStatistics().getMissCount());
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.outerj.daisy.diff.html.dom.DomTree;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.ParsedDocument;
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+/**
+ * Checks the eviction of the {@link ParsedDocumentCache} and the trees built
+ * from a {@link ParsedDocument}.
+ */
+public class ParsedDocumentCacheTest {
+
+    @Test
+    public void leastRecentlyUsedIsDropped() throws Exception {
+        ParsedDocument a = parse("<p>First document</p>");
+        ParsedDocument b = parse("<p>Other document</p>");
+        ParsedDocument c = parse("<p>Third document</p>");
+        assertEquals(a.getRetainedSize(), b.getRetainedSize());
+
+        ParsedDocumentCache cache = new ParsedDocumentCache(2 * a
+                .getRetainedSize() + c.getRetainedSize() - 1);
+        cache.put("a", a);
+        cache.put("b", b);
+        assertNotNull(cache.get("a"));
+        cache.put("c", c);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(a.getRetainedSize() + c.getRetainedSize(), cache
+                .getRetainedSize());
+    }
+
+    @Test
+    public void newTreesShareTokens() throws Exception {
+        ParsedDocument document = parse("<p>Same <b>words</b> again</p>");
+        TokenDictionary dictionary = new TokenDictionary();
+        dictionary.intern("first");
+        DomTree first = document.newTree(dictionary);
+        DomTree second = document.newTree(dictionary);
+
+        assertNotSame(first.getBodyNode(), second.getBodyNode());
+        assertEquals(first.getTextNodes().size(), second.getTextNodes().size());
+        for (int i = 0; i < first.getTextNodes().size(); i++) {
+            assertNotSame(first.getTextNodes().get(i), second.getTextNodes()
+                    .get(i));
+            assertEquals(first.getTextNodes().get(i).getToken(), second
+                    .getTextNodes().get(i).getToken());
+            assertEquals(first.getTextNodes().get(i).getText(), second
+                    .getTextNodes().get(i).getText());
+        }
+        assertEquals(dictionary.intern("words"), first.getTextNodes().get(1)
+                .getToken());
+    }
+
+    private static ParsedDocument parse(String body) throws Exception {
+        DomTreeBuilder handler = new DomTreeBuilder();
+        XMLReader reader = XMLReaderFactory.createXMLReader();
+        reader.setContentHandler(handler);
+        reader.parse(new InputSource(new StringReader("<html><body>" + body
+                + "</body></html>")));
+        return new ParsedDocument(handler);
+    }
+}
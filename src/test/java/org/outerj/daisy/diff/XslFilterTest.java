@@ -0,0 +1,42 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Checks that stylesheets are compiled once and shared.
+ */
+public class XslFilterTest {
+
+    @Test
+    public void templatesAreShared() throws Exception {
+        XslFilter.warmUp();
+        for (String xslPath : XslFilter.STYLESHEETS) {
+            assertNotNull(XslFilter.getTemplates(xslPath));
+            assertSame(XslFilter.getTemplates(xslPath), XslFilter
+                    .getTemplates(xslPath));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingStylesheet() throws Exception {
+        XslFilter.getTemplates("xslfilter/missing.xsl");
+    }
+}
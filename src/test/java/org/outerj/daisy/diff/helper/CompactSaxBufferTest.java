@@ -0,0 +1,116 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Checks that a {@link CompactSaxBuffer} replays the same events as a
+ * {@link SaxBuffer}, with its text in memory or in a file.
+ */
+public class CompactSaxBufferTest {
+
+    @Test
+    public void sameAsSaxBuffer() throws Exception {
+        SaxBuffer expected = new SaxBuffer();
+        send(expected);
+        CompactSaxBuffer actual = new CompactSaxBuffer();
+        send(actual);
+
+        assertFalse(actual.isSpilled());
+        assertEquals(dump(expected), dump(actual));
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void spilledText() throws Exception {
+        SaxBuffer expected = new SaxBuffer();
+        send(expected);
+        CompactSaxBuffer actual = new CompactSaxBuffer(40);
+        send(actual);
+
+        assertTrue(actual.isSpilled());
+        assertEquals(dump(expected), dump(actual));
+        // replaying twice reads the file again
+        assertEquals(dump(expected), dump(actual));
+        // the recording is the same as in memory
+        SaxBuffer replayed = new SaxBuffer();
+        SaxEventRecorder.replay(actual.toByteArray(), replayed);
+        assertEquals(dump(expected), dump(replayed));
+
+        actual.recycle();
+        assertTrue(actual.isEmpty());
+        assertFalse(actual.isSpilled());
+        send(actual);
+        assertEquals(dump(expected), dump(actual));
+        actual.close();
+        assertTrue(actual.isEmpty());
+    }
+
+    private static <H extends ContentHandler & LexicalHandler> void send(
+            H handler) throws SAXException {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            longText.append("changed-diff-").append(i);
+        }
+        handler.startDocument();
+        handler.startPrefixMapping("x", "urn:x");
+        for (int i = 0; i < 10; i++) {
+            AttributesImpl atts = new AttributesImpl();
+            atts.addAttribute("", "class", "class", "CDATA", "diff-html-changed");
+            atts.addAttribute("", "changes", "changes", "CDATA", longText
+                    .toString());
+            handler.startElement("urn:x", "span", "x:span", atts);
+            char[] text = ("Paragraph " + i + " of text").toCharArray();
+            handler.characters(text, 0, text.length);
+            char[] space = "\n  ".toCharArray();
+            handler.ignorableWhitespace(space, 0, space.length);
+            handler.endElement("urn:x", "span", "x:span");
+        }
+        char[] text = longText.toString().toCharArray();
+        handler.characters(text, 0, text.length);
+        handler.processingInstruction("target", "data");
+        handler.skippedEntity("nbsp");
+        handler.endPrefixMapping("x");
+        handler.startCDATA();
+        char[] comment = " a comment ".toCharArray();
+        handler.comment(comment, 0, comment.length);
+        handler.endCDATA();
+        handler.endDocument();
+    }
+
+    private static String dump(SaxBuffer buffer) throws Exception {
+        StringWriter writer = new StringWriter();
+        buffer.dump(writer);
+        return writer.toString();
+    }
+
+    private static String dump(CompactSaxBuffer buffer) throws Exception {
+        StringWriter writer = new StringWriter();
+        buffer.dump(writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.outerj.daisy.diff.HtmlCleaner;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that a {@link HtmlCleanupHandler} cleans up documents exactly like
+ * <code>xslfilter/cleanup.xsl</code>.
+ */
+public class HtmlCleanupHandlerTest {
+
+    private static final String[] DOCUMENTS = {
+            "<html><head><title>Title</title></head><body><p>A <b>bold</b> "
+                    + "word</p>\n<p class=\"x\">Another paragraph</p></body></html>",
+            "<html><body onload=\"init()\" class=\"page\">before<script>var x = 1;"
+                    + "</script>after<p onclick=\"f()\" title=\"kept\">"
+                    + "<a href=\"javascript:void(0)\" name=\"n\">link</a></p></body></html>",
+            "<html><body><noscript class=\"first\">no scripts</noscript>"
+                    + "<div><span>text</span><noscript id=\"late\">more</noscript>"
+                    + "</div></body></html>",
+            "<html>outside<body><p xml:lang=\"en\" lang=\"fr\">x</p><!-- comment -->"
+                    + "<?pi data?></body>after</html>" };
+
+    @Test
+    public void sameAsStylesheet() throws Exception {
+        for (String document : DOCUMENTS) {
+            assertEquals(clean(document, true), clean(document, false));
+        }
+    }
+
+    @Test
+    public void scriptsAreRemoved() throws Exception {
+        String cleaned = clean(DOCUMENTS[1], false);
+        assertFalse(cleaned.contains("script"));
+        assertFalse(cleaned.contains("var x"));
+        assertFalse(cleaned.contains("onclick"));
+        assertFalse(cleaned.contains("javascript:"));
+    }
+
+    private static String clean(String html, boolean useXsl) throws Exception {
+        Recorder recorder = new Recorder();
+        new HtmlCleaner(useXsl).cleanAndParse(new InputSource(
+                new StringReader(html)), recorder);
+        return recorder.toString();
+    }
+
+    /*
+     * Records the elements, attributes and text it receives.
+     */
+    private static class Recorder extends DefaultHandler {
+
+        private final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                Attributes attributes) {
+            events.append('<').append(localName).append('|').append(qName);
+            for (int i = 0; i < attributes.getLength(); i++) {
+                events.append(' ').append(attributes.getLocalName(i)).append(
+                        '|').append(attributes.getQName(i)).append('=')
+                        .append(attributes.getValue(i));
+            }
+            events.append('>');
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.append("</").append(qName).append('>');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.append(ch, start, length);
+        }
+
+        @Override
+        public String toString() {
+            return events.toString();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.helper;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that consecutive character events are merged, or split into slices
+ * of a maximum length.
+ */
+public class MergeCharacterEventsHandlerTest {
+
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+    @Test
+    public void mergesChunks() throws Exception {
+        Recorder recorder = new Recorder();
+        MergeCharacterEventsHandler handler = new MergeCharacterEventsHandler(
+                recorder);
+        StringBuilder expected = new StringBuilder();
+        handler.startElement("", "pre", "pre", NO_ATTRIBUTES);
+        for (int i = 0; i < 5000; i++) {
+            String chunk = "chunk " + i + " &amp; ";
+            expected.append(chunk);
+            handler.characters(("[" + chunk + "]").toCharArray(), 1, chunk
+                    .length());
+        }
+        handler.endElement("", "pre", "pre");
+        handler.startElement("", "p", "p", NO_ATTRIBUTES);
+        handler.characters("short".toCharArray(), 0, 5);
+        handler.endElement("", "p", "p");
+
+        assertEquals(2, recorder.events.size());
+        assertEquals(expected.toString(), recorder.events.get(0));
+        assertEquals("short", recorder.events.get(1));
+    }
+
+    @Test
+    public void splitsLongText() throws Exception {
+        Recorder recorder = new Recorder();
+        MergeCharacterEventsHandler handler = new MergeCharacterEventsHandler(
+                recorder, 4);
+        handler.characters("abc".toCharArray(), 0, 3);
+        handler.characters("defghij".toCharArray(), 0, 7);
+        // a surrogate pair is not split
+        handler.characters("k\uD83D\uDE00m".toCharArray(), 0, 4);
+        handler.endDocument();
+
+        List<String> expected = new ArrayList<String>();
+        expected.add("abcd");
+        expected.add("efgh");
+        expected.add("ijk");
+        expected.add("\uD83D\uDE00m");
+        assertEquals(expected, recorder.events);
+    }
+
+    /*
+     * Records the text of every character event.
+     */
+    private static class Recorder extends DefaultHandler {
+
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.add(new String(ch, start, length));
+        }
+    }
+}
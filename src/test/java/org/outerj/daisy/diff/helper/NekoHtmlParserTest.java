@@ -0,0 +1,130 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that reused Neko parsers give the same events as new ones.
+ */
+public class NekoHtmlParserTest {
+
+    @Test
+    public void reusedParsers() throws Exception {
+        final NekoHtmlParser parser = new NekoHtmlParser(Integer.MAX_VALUE, 2);
+        final String expected = parse(new NekoHtmlParser(Integer.MAX_VALUE, 0),
+                3);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 40; i++) {
+                final int paragraphs = i % 2 == 0 ? 3 : i;
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return parse(parser, paragraphs);
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i += 2) {
+                assertEquals(expected, results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failedParse() throws Exception {
+        NekoHtmlParser parser = new NekoHtmlParser(Integer.MAX_VALUE, 1);
+        String expected = parse(parser, 3);
+        try {
+            parser.parse(source(3), new DefaultHandler() {
+                @Override
+                public void characters(char[] ch, int start, int length)
+                        throws SAXException {
+                    throw new SAXException("Stop");
+                }
+            });
+            fail();
+        } catch (SAXException e) {
+            assertEquals("Stop", e.getMessage());
+        }
+        assertEquals(expected, parse(parser, 3));
+    }
+
+    @Test
+    public void bufferedParse() throws Exception {
+        NekoHtmlParser parser = new NekoHtmlParser();
+        SaxBuffer expected = new SaxBuffer();
+        parser.parse(source(3), expected);
+        CompactSaxBuffer actual = parser.parse(source(3));
+
+        StringWriter expectedDump = new StringWriter();
+        expected.dump(expectedDump);
+        StringWriter actualDump = new StringWriter();
+        actual.dump(actualDump);
+        assertEquals(expectedDump.toString(), actualDump.toString());
+    }
+
+    private static String parse(NekoHtmlParser parser, int paragraphs)
+            throws Exception {
+        final StringBuilder events = new StringBuilder();
+        parser.parse(source(paragraphs), new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName,
+                    String qName, Attributes attributes) {
+                events.append('<').append(localName).append('>');
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                events.append("</").append(localName).append('>');
+            }
+
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                events.append(ch, start, length);
+            }
+        });
+        return events.toString();
+    }
+
+    private static InputSource source(int paragraphs) {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < paragraphs; i++) {
+            html.append("<p>Paragraph <b>").append(i).append("</b></p>");
+        }
+        return new InputSource(new StringReader(html.append("</body></html>")
+                .toString()));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Checks that recorded events are replayed unchanged.
+ */
+public class SaxEventRecorderTest {
+
+    @Test
+    public void replay() throws Exception {
+        SaxBuffer expected = new SaxBuffer();
+        send(expected);
+        SaxEventRecorder recorder = new SaxEventRecorder();
+        send(recorder);
+
+        SaxBuffer actual = new SaxBuffer();
+        SaxEventRecorder.replay(recorder.toByteArray(), actual);
+        assertEquals(dump(expected), dump(actual));
+    }
+
+    @Test
+    public void notARecording() throws Exception {
+        try {
+            SaxEventRecorder.replay(new byte[] { 1, 2 }, new SaxBuffer());
+            fail();
+        } catch (SAXException e) {
+            // expected
+        }
+    }
+
+    private static void send(ContentHandler handler) throws SAXException {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longValue.append("removed-diff-").append(i);
+        }
+        handler.startDocument();
+        for (int i = 0; i < 3; i++) {
+            AttributesImpl atts = new AttributesImpl();
+            atts.addAttribute("", "class", "class", "CDATA", "diff-html-added");
+            atts.addAttribute("", "id", "id", "CDATA", longValue.toString());
+            handler.startElement("", "span", "span", atts);
+            char[] text = (longValue + " caf\u00e9 \ud83d\ude00 " + i).toCharArray();
+            handler.characters(text, 0, text.length);
+            handler.endElement("", "span", "span");
+        }
+        handler.processingInstruction("target", "some data");
+        handler.startElement(null, "br", "br", new AttributesImpl());
+        handler.endElement(null, "br", "br");
+        handler.endDocument();
+    }
+
+    private static String dump(SaxBuffer buffer) throws Exception {
+        StringWriter writer = new StringWriter();
+        buffer.dump(writer);
+        return writer.toString();
+    }
+}
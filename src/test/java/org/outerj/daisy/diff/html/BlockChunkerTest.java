@@ -0,0 +1,139 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.compare.internal.LCSSettings;
+import org.eclipse.compare.rangedifferencer.DiffBudget;
+import org.eclipse.compare.rangedifferencer.RangeDifference;
+import org.junit.Test;
+import org.outerj.daisy.diff.helper.NekoHtmlParser;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
+import org.xml.sax.InputSource;
+
+/**
+ * Checks that comparing documents block by block finds a valid script, with
+ * or without an executor.
+ */
+public class BlockChunkerTest {
+
+    @Test
+    public void validAndDeterministicDifferences() throws Exception {
+        StringBuilder oldText = new StringBuilder("<html><body>");
+        StringBuilder newText = new StringBuilder("<html><body>");
+        for (int i = 0; i < 200; i++) {
+            oldText.append("<p>Paragraph ").append(i)
+                    .append(" of the blue book.</p>");
+            if (i % 7 == 3) {
+                newText.append("<p>Paragraph ").append(i)
+                        .append(" of the big blue book.</p>");
+            } else if (i % 11 == 5) {
+                newText.append("<h2>New heading ").append(i).append("</h2>");
+            } else if (i % 13 != 4) {
+                newText.append("<p>Paragraph ").append(i)
+                        .append(" of the blue book.</p>");
+            }
+        }
+        oldText.append("</body></html>");
+        newText.append("</body></html>");
+
+        TokenDictionary tokenDictionary = new TokenDictionary();
+        TextNodeComparator leftComparator = parse(oldText.toString(),
+                tokenDictionary);
+        TextNodeComparator rightComparator = parse(newText.toString(),
+                tokenDictionary);
+        LCSSettings settings = new LCSSettings();
+
+        RangeDifference[] differences = new BlockChunker(settings,
+                new DiffBudget(settings)).findDifferences(null,
+                leftComparator, rightComparator);
+        assertValidScript(leftComparator.getTokens(rightComparator),
+                rightComparator.getTokens(leftComparator), differences);
+        String expected = toString(differences);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(expected, toString(new BlockChunker(settings,
+                    new DiffBudget(settings)).findDifferences(executor,
+                    leftComparator, rightComparator)));
+        } finally {
+            executor.shutdown();
+        }
+
+        // rejects the chunks that do not fit in its queue
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(1));
+        try {
+            assertEquals(expected, toString(new BlockChunker(settings,
+                    new DiffBudget(settings)).findDifferences(executor,
+                    leftComparator, rightComparator)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * The text between the differences must be equal, and the differences
+     * must be ordered.
+     */
+    private static void assertValidScript(int[] left, int[] right,
+            RangeDifference[] differences) {
+        int leftIndex = 0;
+        int rightIndex = 0;
+        for (RangeDifference difference : differences) {
+            assertTrue(difference.leftStart() >= leftIndex);
+            assertEquals(difference.leftStart() - leftIndex, difference
+                    .rightStart()
+                    - rightIndex);
+            while (leftIndex < difference.leftStart()) {
+                assertEquals(left[leftIndex++], right[rightIndex++]);
+            }
+            leftIndex = difference.leftEnd();
+            rightIndex = difference.rightEnd();
+        }
+        assertEquals(left.length - leftIndex, right.length - rightIndex);
+        while (leftIndex < left.length) {
+            assertEquals(left[leftIndex++], right[rightIndex++]);
+        }
+    }
+
+    private static TextNodeComparator parse(String html,
+            TokenDictionary tokenDictionary) throws Exception {
+        DomTreeBuilder handler = new DomTreeBuilder(tokenDictionary);
+        new NekoHtmlParser().parse(new InputSource(new StringReader(html)),
+                handler);
+        return new TextNodeComparator(handler, Locale.getDefault());
+    }
+
+    private static String toString(RangeDifference[] differences) {
+        StringBuilder result = new StringBuilder();
+        for (RangeDifference difference : differences) {
+            result.append(difference).append('\n');
+        }
+        return result.toString();
+    }
+}
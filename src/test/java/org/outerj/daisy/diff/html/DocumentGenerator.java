@@ -0,0 +1,521 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates HTML documents of a given size and revisions of them, for tests
+ * and benchmarks that need more than the hand-made test data.
+ * <p>
+ * A document is a body of paragraphs, headings, lists, tables and sections
+ * nesting more of them, with some words in bold, italics or links and
+ * some images. A revision applies the {@link Edit}s with their rates to a
+ * copy of the document. The same seed and settings always give the same
+ * documents.
+ */
+public class DocumentGenerator {
+
+    /**
+     * The kinds of edits a revision makes. The rate of an edit is the
+     * chance that one word, block, element or row is edited.
+     */
+    public enum Edit {
+        /** Replaces, inserts or deletes a word. */
+        WORDS,
+        /** Moves a block of the body to another place in the body. */
+        MOVES,
+        /** Changes, adds or removes an attribute of an element. */
+        ATTRIBUTES,
+        /** Inserts a row before a row of a table. */
+        TABLE_ROWS,
+        /** Deletes up to ten blocks of the body, starting at a block. */
+        DELETIONS
+    }
+
+    private static final String[] WORDS = { "the", "of", "and", "to", "in",
+            "a", "is", "that", "for", "it", "as", "was", "with", "be", "by",
+            "on", "not", "he", "this", "are", "or", "his", "from", "at",
+            "which", "but", "have", "an", "had", "they", "you", "were",
+            "their", "one", "all", "we", "can", "her", "has", "there",
+            "been", "if", "more", "when", "will", "would", "who", "so",
+            "no", "document", "revision", "table", "change", "section",
+            "report", "figure", "value", "result", "method", "system",
+            "process", "between", "during", "without", "against", "number",
+            "information", "development", "government", "company", "market",
+            "program", "question", "service", "problem", "percent", "project",
+            "quality", "account", "average", "balance", "century", "council",
+            "evidence", "example", "finance", "history", "language",
+            "material", "meeting", "network", "opinion", "picture",
+            "product", "reading", "science", "student", "surface",
+            "teacher", "traffic", "village", "weather", "library" };
+
+    private static final String[] INLINE_TAGS = { "b", "i", "em", "strong",
+            "a", "span" };
+
+    private static final String[] COLORS = { "red", "green", "blue", "gray",
+            "black", "navy", "teal", "maroon" };
+
+    // the chance that a block is a section with more blocks inside, and
+    // that a table cell holds a block instead of text
+    private static final double NESTING_RATE = 0.15;
+
+    private static final double HEADING_RATE = 0.1;
+
+    private final long seed;
+
+    private int size = 10 * 1024;
+
+    private int maxDepth = 3;
+
+    private double tableDensity = 0.1;
+
+    private double listDensity = 0.1;
+
+    private double imageDensity = 0.05;
+
+    private final double[] editRates = new double[Edit.values().length];
+
+    private int imageCount;
+
+    public DocumentGenerator(long seed) {
+        this.seed = seed;
+        editRates[Edit.WORDS.ordinal()] = 0.02;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param size - the approximate size of the generated documents, in
+     * characters
+     */
+    public void setSize(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("The size must be positive");
+        this.size = size;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @param maxDepth - the number of sections, lists and tables that may be
+     * nested in each other, 1 for none
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1)
+            throw new IllegalArgumentException(
+                    "The maximum depth must be at least 1");
+        this.maxDepth = maxDepth;
+    }
+
+    public double getTableDensity() {
+        return tableDensity;
+    }
+
+    /**
+     * @param tableDensity - the chance that a block is a table
+     */
+    public void setTableDensity(double tableDensity) {
+        this.tableDensity = checkRate(tableDensity);
+    }
+
+    public double getListDensity() {
+        return listDensity;
+    }
+
+    /**
+     * @param listDensity - the chance that a block is a list
+     */
+    public void setListDensity(double listDensity) {
+        this.listDensity = checkRate(listDensity);
+    }
+
+    public double getImageDensity() {
+        return imageDensity;
+    }
+
+    /**
+     * @param imageDensity - the chance that a paragraph holds an image
+     */
+    public void setImageDensity(double imageDensity) {
+        this.imageDensity = checkRate(imageDensity);
+    }
+
+    public double getEditRate(Edit edit) {
+        return editRates[edit.ordinal()];
+    }
+
+    /**
+     * @param edit - the kind of edit
+     * @param rate - the chance that one word, block, element or row is
+     * edited, 0 to not make this kind of edit. By default only 2% of the
+     * words are edited.
+     */
+    public void setEditRate(Edit edit, double rate) {
+        editRates[edit.ordinal()] = checkRate(rate);
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1)
+            throw new IllegalArgumentException(
+                    "A rate must be between 0 and 1");
+        return rate;
+    }
+
+    /**
+     * @return the document for the seed and the settings
+     */
+    public String generate() {
+        return generateRevisions(0)[0];
+    }
+
+    /**
+     * @return the document followed by one revision of it
+     */
+    public String[] generatePair() {
+        return generateRevisions(1);
+    }
+
+    /**
+     * Generates the document and independent revisions of it, such as an
+     * ancestor and two versions for a three-way comparison.
+     * @param count - the number of revisions
+     * @return the document followed by the revisions
+     */
+    public String[] generateRevisions(int count) {
+        Random random = new Random(seed);
+        imageCount = 0;
+        List<Element> blocks = new ArrayList<Element>();
+        int length = 0;
+        while (length < size) {
+            Element block = createBlock(random, 1);
+            blocks.add(block);
+            StringBuilder html = new StringBuilder();
+            block.render(html);
+            length += html.length();
+        }
+
+        String[] result = new String[count + 1];
+        result[0] = render(blocks);
+        for (int i = 1; i <= count; i++) {
+            // each revision has its own random numbers, so the first one
+            // does not depend on the number of revisions
+            Random editRandom = new Random(seed * 31 + i);
+            List<Element> revision = new ArrayList<Element>(blocks.size());
+            for (Element block : blocks) {
+                revision.add(block.copy());
+            }
+            edit(editRandom, revision);
+            result[i] = render(revision);
+        }
+        return result;
+    }
+
+    private static String render(List<Element> blocks) {
+        StringBuilder html = new StringBuilder("<html><head><title>Generated document</title></head><body>\n");
+        for (Element block : blocks) {
+            block.render(html);
+            html.append('\n');
+        }
+        return html.append("</body></html>\n").toString();
+    }
+
+    private Element createBlock(Random random, int depth) {
+        double dice = random.nextDouble();
+        if (dice < tableDensity)
+            return createTable(random, depth, 2 + random.nextInt(4));
+        dice -= tableDensity;
+        if (dice < listDensity)
+            return createList(random, depth);
+        dice -= listDensity;
+        if (depth < maxDepth && dice < NESTING_RATE) {
+            Element section = new Element("div");
+            section.setAttribute("class", "section" + random.nextInt(5));
+            int nbBlocks = 2 + random.nextInt(4);
+            for (int i = 0; i < nbBlocks; i++) {
+                section.add(createBlock(random, depth + 1));
+            }
+            return section;
+        }
+        if (random.nextDouble() < HEADING_RATE) {
+            Element heading = new Element("h" + (1 + random.nextInt(4)));
+            heading.add(createWords(random, 2 + random.nextInt(6)));
+            return heading;
+        }
+        return createParagraph(random);
+    }
+
+    private Element createParagraph(Random random) {
+        Element paragraph = new Element("p");
+        int nbParts = 1 + random.nextInt(5);
+        for (int i = 0; i < nbParts; i++) {
+            if (i % 2 == 0) {
+                paragraph.add(createWords(random, 5 + random.nextInt(20)));
+            } else {
+                String name = INLINE_TAGS[random.nextInt(INLINE_TAGS.length)];
+                Element inline = new Element(name);
+                if (name.equals("a")) {
+                    inline.setAttribute("href", "page" + random.nextInt(1000)
+                            + ".html");
+                } else if (name.equals("span")) {
+                    inline.setAttribute("style", "color: "
+                            + COLORS[random.nextInt(COLORS.length)]);
+                }
+                inline.add(createWords(random, 1 + random.nextInt(5)));
+                paragraph.add(inline);
+            }
+        }
+        if (random.nextDouble() < imageDensity) {
+            Element image = new Element("img");
+            image.setAttribute("src", "images/image" + imageCount++ + ".png");
+            image.setAttribute("alt", createWords(random, 2));
+            paragraph.add(random.nextInt(paragraph.children.size() + 1),
+                    image);
+        }
+        return paragraph;
+    }
+
+    private Element createList(Random random, int depth) {
+        Element list = new Element(random.nextBoolean() ? "ul" : "ol");
+        int nbItems = 2 + random.nextInt(6);
+        for (int i = 0; i < nbItems; i++) {
+            Element item = new Element("li");
+            item.add(createWords(random, 2 + random.nextInt(10)));
+            if (depth < maxDepth && random.nextDouble() < NESTING_RATE)
+                item.add(createList(random, depth + 1));
+            list.add(item);
+        }
+        return list;
+    }
+
+    private Element createTable(Random random, int depth, int nbColumns) {
+        Element table = new Element("table");
+        table.setAttribute("border", "1");
+        Element body = new Element("tbody");
+        int nbRows = 2 + random.nextInt(8);
+        for (int i = 0; i < nbRows; i++) {
+            body.add(createRow(random, depth, nbColumns));
+        }
+        table.add(body);
+        return table;
+    }
+
+    private Element createRow(Random random, int depth, int nbColumns) {
+        Element row = new Element("tr");
+        for (int j = 0; j < nbColumns; j++) {
+            Element cell = new Element("td");
+            if (depth < maxDepth && random.nextDouble() < NESTING_RATE) {
+                cell.add(createBlock(random, depth + 1));
+            } else {
+                cell.add(createWords(random, 1 + random.nextInt(6)));
+            }
+            row.add(cell);
+        }
+        return row;
+    }
+
+    private static String createWords(Random random, int nbWords) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < nbWords; i++) {
+            if (i > 0)
+                words.append(' ');
+            words.append(createWord(random));
+        }
+        return words.toString();
+    }
+
+    private static String createWord(Random random) {
+        // numbers are the rare words of a document
+        if (random.nextInt(20) == 0)
+            return Integer.toString(random.nextInt(100000));
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private void edit(Random random, List<Element> blocks) {
+        double deletions = getEditRate(Edit.DELETIONS);
+        if (deletions > 0) {
+            for (int i = 0; i < blocks.size(); i++) {
+                if (random.nextDouble() < deletions) {
+                    int end = Math.min(blocks.size(), i + 1
+                            + random.nextInt(10));
+                    blocks.subList(i, end).clear();
+                }
+            }
+        }
+
+        double moves = getEditRate(Edit.MOVES);
+        if (moves > 0 && blocks.size() > 1) {
+            int nbMoves = (int) Math.round(moves * blocks.size());
+            for (int i = 0; i < nbMoves; i++) {
+                Element block = blocks.remove(random.nextInt(blocks.size()));
+                blocks.add(random.nextInt(blocks.size() + 1), block);
+            }
+        }
+
+        for (Element block : blocks) {
+            edit(random, block);
+        }
+    }
+
+    private void edit(Random random, Element element) {
+        double attributes = getEditRate(Edit.ATTRIBUTES);
+        if (attributes > 0 && random.nextDouble() < attributes)
+            editAttributes(random, element);
+
+        double rows = getEditRate(Edit.TABLE_ROWS);
+        if (rows > 0 && element.name.equals("tbody")) {
+            for (int i = 0; i < element.children.size(); i++) {
+                if (random.nextDouble() < rows) {
+                    Element row = (Element) element.children.get(i);
+                    element.add(i++, createRow(random, maxDepth, row.children
+                            .size()));
+                }
+            }
+        }
+
+        double words = getEditRate(Edit.WORDS);
+        for (int i = 0; i < element.children.size(); i++) {
+            Object child = element.children.get(i);
+            if (child instanceof Element) {
+                edit(random, (Element) child);
+            } else if (words > 0) {
+                element.children.set(i, editWords(random, (String) child,
+                        words));
+            }
+        }
+    }
+
+    private static void editAttributes(Random random, Element element) {
+        int dice = random.nextInt(3);
+        String removable = getRemovableAttribute(element);
+        if (dice == 0 && removable != null) {
+            element.attributes.remove(removable);
+        } else if (dice == 1) {
+            element.setAttribute("class", "edited" + random.nextInt(5));
+        } else {
+            element.setAttribute("style", "color: "
+                    + COLORS[random.nextInt(COLORS.length)]);
+        }
+    }
+
+    /*
+     * Returns the first attribute the element can do without, an image
+     * keeps its source.
+     */
+    private static String getRemovableAttribute(Element element) {
+        for (String name : element.attributes.keySet()) {
+            if (!element.name.equals("img") || !name.equals("src"))
+                return name;
+        }
+        return null;
+    }
+
+    private static String editWords(Random random, String text, double rate) {
+        String[] words = text.split(" ");
+        StringBuilder result = new StringBuilder(text.length() + 16);
+        for (String word : words) {
+            if (random.nextDouble() < rate) {
+                int dice = random.nextInt(4);
+                if (dice == 0) {
+                    continue; // delete
+                } else if (dice == 1) {
+                    append(result, createWord(random)); // insert
+                } else {
+                    word = createWord(random); // replace
+                }
+            }
+            append(result, word);
+        }
+        // an element should not lose all its text
+        return result.length() > 0 ? result.toString() : createWord(random);
+    }
+
+    private static void append(StringBuilder words, String word) {
+        if (words.length() > 0)
+            words.append(' ');
+        words.append(word);
+    }
+
+    /*
+     * An element with elements and strings of words as its children.
+     */
+    private static class Element {
+
+        final String name;
+
+        final Map<String, String> attributes = new LinkedHashMap<String, String>();
+
+        final List<Object> children = new ArrayList<Object>();
+
+        Element(String name) {
+            this.name = name;
+        }
+
+        void setAttribute(String name, String value) {
+            attributes.put(name, value);
+        }
+
+        void add(Object child) {
+            children.add(child);
+        }
+
+        void add(int index, Object child) {
+            children.add(index, child);
+        }
+
+        Element copy() {
+            Element copy = new Element(name);
+            copy.attributes.putAll(attributes);
+            for (Object child : children) {
+                copy.add(child instanceof Element ? ((Element) child).copy()
+                        : child);
+            }
+            return copy;
+        }
+
+        void render(StringBuilder html) {
+            html.append('<').append(name);
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                html.append(' ').append(attribute.getKey()).append("=\"")
+                        .append(attribute.getValue()).append('"');
+            }
+            if (children.isEmpty()) {
+                html.append("/>");
+                return;
+            }
+            html.append('>');
+            for (int i = 0; i < children.size(); i++) {
+                Object child = children.get(i);
+                if (i > 0)
+                    html.append(' ');
+                if (child instanceof Element) {
+                    ((Element) child).render(html);
+                } else {
+                    html.append((String) child);
+                }
+            }
+            html.append("</").append(name).append('>');
+        }
+    }
+}
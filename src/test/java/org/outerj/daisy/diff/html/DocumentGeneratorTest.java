@@ -0,0 +1,129 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.outerj.daisy.diff.html.DocumentGenerator.Edit;
+import org.xml.sax.InputSource;
+
+/**
+ * Checks that {@link DocumentGenerator} is deterministic and makes the
+ * documents it is asked for.
+ */
+public class DocumentGeneratorTest {
+
+    @Test
+    public void deterministic() {
+        DocumentGenerator generator = createGenerator(42);
+        String[] revisions = generator.generateRevisions(2);
+        assertArrayEquals(revisions, createGenerator(42).generateRevisions(2));
+        assertEquals(revisions[1], createGenerator(42).generatePair()[1]);
+        assertEquals(revisions[0], generator.generate());
+
+        assertFalse(revisions[0].equals(revisions[1]));
+        assertFalse(revisions[1].equals(revisions[2]));
+        assertFalse(revisions[0].equals(createGenerator(43).generate()));
+    }
+
+    @Test
+    public void size() {
+        DocumentGenerator generator = new DocumentGenerator(1);
+        generator.setSize(1024);
+        assertTrue(generator.generate().length() < 4 * 1024);
+        generator.setSize(1024 * 1024);
+        String document = generator.generate();
+        assertTrue(document.length() >= 1024 * 1024);
+        assertTrue(document.length() < 1100 * 1024);
+    }
+
+    @Test
+    public void density() {
+        DocumentGenerator generator = new DocumentGenerator(7);
+        generator.setTableDensity(0);
+        generator.setListDensity(0);
+        generator.setImageDensity(0);
+        String document = generator.generate();
+        assertFalse(document.contains("<table"));
+        assertFalse(document.contains("<li"));
+        assertFalse(document.contains("<img"));
+
+        generator.setTableDensity(0.5);
+        generator.setImageDensity(1);
+        document = generator.generate();
+        assertTrue(document.contains("<table"));
+        assertTrue(document.contains("<img"));
+    }
+
+    @Test
+    public void wellFormed() throws Exception {
+        String[] revisions = createGenerator(3).generatePair();
+        for (String revision : revisions) {
+            DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+                    new InputSource(new StringReader(revision)));
+        }
+    }
+
+    @Test
+    public void noEdits() {
+        DocumentGenerator generator = new DocumentGenerator(5);
+        generator.setEditRate(Edit.WORDS, 0);
+        String[] pair = generator.generatePair();
+        assertEquals(pair[0], pair[1]);
+    }
+
+    /**
+     * Diffs revisions made with every kind of edit, including attribute
+     * edits of images.
+     */
+    @Test
+    public void revisionsCanBeDiffed() throws Exception {
+        for (long seed = 0; seed < 5; seed++) {
+            DocumentGenerator generator = new DocumentGenerator(seed);
+            generator.setSize(8 * 1024);
+            generator.setImageDensity(1);
+            for (Edit edit : Edit.values()) {
+                generator.setEditRate(edit, 0.2);
+            }
+            // edits the attributes of every image
+            generator.setEditRate(Edit.ATTRIBUTES, 1);
+            String[] pair = generator.generatePair();
+            // an image without a source cannot be diffed
+            assertFalse(Pattern.compile("<img(?![^>]* src=)").matcher(
+                    pair[1]).find());
+            assertTrue(HtmlTestFixture.diff(pair[0], pair[1]).length() > 0);
+        }
+    }
+
+    private static DocumentGenerator createGenerator(long seed) {
+        DocumentGenerator generator = new DocumentGenerator(seed);
+        generator.setSize(20 * 1024);
+        generator.setEditRate(Edit.MOVES, 0.05);
+        generator.setEditRate(Edit.ATTRIBUTES, 0.02);
+        generator.setEditRate(Edit.TABLE_ROWS, 0.1);
+        generator.setEditRate(Edit.DELETIONS, 0.01);
+        return generator;
+    }
+}
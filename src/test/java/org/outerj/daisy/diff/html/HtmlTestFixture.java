@@ -26,6 +26,7 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.outerj.daisy.diff.helper.NekoHtmlParser;
 import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.dom.helper.TokenDictionary;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 
@@ -80,12 +81,14 @@ public class HtmlTestFixture {
         InputSource newSource = new InputSource(new StringReader(
         		second));
 
-        DomTreeBuilder oldHandler = new DomTreeBuilder();
+        TokenDictionary tokenDictionary = new TokenDictionary();
+
+        DomTreeBuilder oldHandler = new DomTreeBuilder(tokenDictionary);
         cleaner.parse(oldSource, oldHandler);
         TextNodeComparator leftComparator = new TextNodeComparator(
                 oldHandler, locale);
 
-        DomTreeBuilder newHandler = new DomTreeBuilder();
+        DomTreeBuilder newHandler = new DomTreeBuilder(tokenDictionary);
         cleaner.parse(newSource, newHandler);
         TextNodeComparator rightComparator = new TextNodeComparator(
                 newHandler, locale);
@@ -150,17 +153,19 @@ public class HtmlTestFixture {
 		InputSource newSource = new InputSource(new StringReader(
 				second));
 		
-		DomTreeBuilder ancestorHandler = new DomTreeBuilder();
+		TokenDictionary tokenDictionary = new TokenDictionary();
+
+		DomTreeBuilder ancestorHandler = new DomTreeBuilder(tokenDictionary);
 		cleaner.parse(ancestorSource, ancestorHandler);
 		TextNodeComparator ancestorComparator = new TextNodeComparator(
 				ancestorHandler, locale);
 		
-		DomTreeBuilder oldHandler = new DomTreeBuilder();
+		DomTreeBuilder oldHandler = new DomTreeBuilder(tokenDictionary);
 		cleaner.parse(oldSource, oldHandler);
 		TextNodeComparator leftComparator = new TextNodeComparator(
 				oldHandler, locale);
 		
-		DomTreeBuilder newHandler = new DomTreeBuilder();
+		DomTreeBuilder newHandler = new DomTreeBuilder(tokenDictionary);
 		cleaner.parse(newSource, newHandler);
 		TextNodeComparator rightComparator = new TextNodeComparator(
 				newHandler, locale);
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2009 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Locale;
+
+import org.junit.Test;
+import org.outerj.daisy.diff.helper.NekoHtmlParser;
+import org.outerj.daisy.diff.html.dom.DomTreeBuilder;
+import org.outerj.daisy.diff.html.modification.Modification;
+import org.outerj.daisy.diff.html.modification.ModificationType;
+import org.xml.sax.InputSource;
+
+/**
+ * Checks how {@link TextNodeComparator} marks text whose ancestors changed.
+ */
+public class TextNodeComparatorTest {
+
+    @Test
+    public void changedAncestors() throws Exception {
+        TextNodeComparator leftComparator = parse("<html><body>"
+                + "<p>one two <i>three</i> four five</p></body></html>");
+        TextNodeComparator rightComparator = parse("<html><body>"
+                + "<p><b>one two</b> <u>three</u> four <b>five</b></p>"
+                + "</body></html>");
+        assertEquals(leftComparator.getRangeCount(), rightComparator
+                .getRangeCount());
+
+        rightComparator.handlePossibleChangedPart(0, leftComparator
+                .getRangeCount(), 0, rightComparator.getRangeCount(),
+                leftComparator);
+
+        Modification one = getModification(rightComparator, "one");
+        Modification two = getModification(rightComparator, "two");
+        Modification three = getModification(rightComparator, "three");
+        Modification five = getModification(rightComparator, "five");
+        assertEquals(one.getID(), two.getID());
+        assertEquals(one.getChanges(), two.getChanges());
+        assertTrue(one.isFirstOfID());
+        assertFalse(two.isFirstOfID());
+
+        assertTrue(three.getID() != one.getID());
+        assertFalse(three.getChanges().equals(one.getChanges()));
+        assertEquals(ModificationType.NONE, getModification(
+                rightComparator, "four").getType());
+
+        // the same parents as the first words, but not next to them
+        assertEquals(one.getChanges(), five.getChanges());
+        assertTrue(five.getID() != one.getID());
+        assertTrue(five.isFirstOfID());
+    }
+
+    private static Modification getModification(
+            TextNodeComparator comparator, String text) {
+        for (int i = 0; i < comparator.getRangeCount(); i++) {
+            if (comparator.getTextNode(i).getText().equals(text))
+                return comparator.getTextNode(i).getModification();
+        }
+        throw new IllegalArgumentException(text);
+    }
+
+    private static TextNodeComparator parse(String html) throws Exception {
+        DomTreeBuilder handler = new DomTreeBuilder();
+        new NekoHtmlParser().parse(new InputSource(new StringReader(html)),
+                handler);
+        return new TextNodeComparator(handler, Locale.getDefault());
+    }
+}
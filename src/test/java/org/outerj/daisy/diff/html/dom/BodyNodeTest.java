@@ -0,0 +1,105 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html.dom;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.outerj.daisy.diff.html.modification.Modification;
+import org.outerj.daisy.diff.html.modification.ModificationType;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Checks which subtrees are moved for a deleted range of text nodes.
+ */
+public class BodyNodeTest {
+
+    @Test
+    public void minimalDeletedSet() throws Exception
+    {
+        BodyNode body = new BodyNode();
+        TagNode p = new TagNode(body, "p", new AttributesImpl());
+        TextNode first = new TextNode(p, "first");
+        TagNode b = new TagNode(p, "b", new AttributesImpl());
+        TextNode second = new TextNode(b, "second");
+        TextNode third = new TextNode(b, "third");
+        TagNode div = new TagNode(body, "div", new AttributesImpl());
+        TextNode fourth = new TextNode(div, "fourth");
+        new TagNode(div, "span", new AttributesImpl());
+
+        List<TextNode> deleted = Arrays.asList(second, third, fourth);
+        markAsDeleted(deleted, 1);
+        assertEquals(Arrays.asList(b, fourth), body.getMinimalDeletedSet(deleted));
+        assertEquals(body.getMinimalDeletedSet(1), body.getMinimalDeletedSet(deleted));
+
+        deleted = Arrays.asList(first);
+        markAsDeleted(deleted, 2);
+        assertEquals(Arrays.asList(first), body.getMinimalDeletedSet(deleted));
+        deleted = Arrays.asList(first, second, third);
+        markAsDeleted(deleted, 3);
+        assertEquals(Arrays.asList(p), body.getMinimalDeletedSet(deleted));
+    }
+
+    /**
+     * Deletes random ranges of random trees and compares the result with the
+     * set found by visiting the whole tree.
+     */
+    @Test
+    public void sameAsWholeTree() throws Exception
+    {
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            BodyNode body = new BodyNode();
+            List<TextNode> textNodes = new ArrayList<TextNode>();
+            addChildren(body, random, 4, textNodes);
+            if (textNodes.isEmpty())
+                continue;
+            int start = random.nextInt(textNodes.size());
+            int end = start + 1 + random.nextInt(textNodes.size() - start);
+            List<TextNode> deleted = textNodes.subList(start, end);
+            markAsDeleted(deleted, i);
+            assertEquals(body.getMinimalDeletedSet(i), body.getMinimalDeletedSet(deleted));
+        }
+    }
+
+    private static void addChildren(TagNode parent, Random random, int depth,
+            List<TextNode> textNodes)
+    {
+        for (int i = random.nextInt(4); i > 0; i--) {
+            if (depth == 0 || random.nextBoolean()) {
+                textNodes.add(new TextNode(parent, "text"));
+            } else {
+                TagNode child = new TagNode(parent, "span", new AttributesImpl());
+                addChildren(child, random, depth - 1, textNodes);
+            }
+        }
+    }
+
+    private static void markAsDeleted(List<TextNode> deleted, long id)
+    {
+        for (TextNode node : deleted) {
+            Modification mod = new Modification(ModificationType.REMOVED,
+                    ModificationType.REMOVED);
+            mod.setID(id);
+            node.setModification(mod);
+        }
+    }
+}
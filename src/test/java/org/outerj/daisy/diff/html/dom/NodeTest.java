@@ -2,6 +2,8 @@ package org.outerj.daisy.diff.html.dom;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import org.xml.sax.helpers.AttributesImpl;
 
 import java.util.Arrays;
@@ -21,4 +23,33 @@ public class NodeTest
         intermediate.addChild(leaf);
         assertEquals(Arrays.asList(root, intermediate), leaf.getParentTree());
     }
+
+    @Test
+    public void testAncestorsFollowTreeChanges() throws Exception
+    {
+        TagNode root = new TagNode(null, "root", new AttributesImpl());
+        TagNode intermediate = new TagNode(root, "middle", new AttributesImpl());
+        TagNode leaf = new TagNode(intermediate, "leaf", new AttributesImpl());
+        TextNode first = new TextNode(leaf, "first");
+        TextNode second = new TextNode(leaf, "second");
+        assertEquals(Arrays.asList(root, intermediate, leaf), first.getAncestors());
+        assertSame(first.getAncestors(), second.getAncestors());
+        assertEquals(3, second.getDepth());
+
+        // attaching a tag moves its descendants
+        TagNode moved = new TagNode(null, "moved", new AttributesImpl());
+        TextNode third = new TextNode(moved, "third");
+        TextNode fourth = new TextNode(moved, "fourth");
+        assertEquals(Arrays.asList(moved), third.getAncestors());
+        moved.setParent(intermediate);
+        intermediate.addChild(moved);
+        assertEquals(Arrays.asList(root, intermediate, moved), third.getAncestors());
+
+        // splitting moves the children to copies of their parent
+        moved.splitUntill(intermediate, third, true);
+        assertNotSame(moved, third.getParent());
+        assertNotSame(third.getParent(), fourth.getParent());
+        assertEquals(Arrays.asList(root, intermediate, third.getParent()), third.getAncestors());
+        assertEquals(Arrays.asList(root, intermediate, fourth.getParent()), fourth.getAncestors());
+    }
 }
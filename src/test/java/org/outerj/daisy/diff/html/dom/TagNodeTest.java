@@ -0,0 +1,110 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.html.dom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.outerj.daisy.diff.html.dom.helper.AttributesMap;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Checks that tags of different trees are compared by name and attributes.
+ */
+public class TagNodeTest {
+
+    @Test
+    public void sameTag() throws Exception {
+        TagNode left = tag("P", "class", "b  a", "STYLE",
+                "color: red;\n font-size:2px ;;", "id", "x");
+        TagNode right = tag("p", "id", "x", "style",
+                "font-size : 2px; color:red", "class", "a b");
+        assertTrue(left.isSameTag(right));
+        assertTrue(right.isSameTag(left));
+        assertEquals(left.hashCode(), right.hashCode());
+
+        assertFalse(left.isSameTag(tag("p", "id", "x", "style",
+                "font-size : 2px; color:red", "class", "a b c")));
+        assertFalse(left.isSameTag(tag("div", "id", "x", "style",
+                "font-size : 2px; color:red", "class", "a b")));
+        assertFalse(tag("p", "style", "").isSameTag(tag("p", "style", ";")));
+        // the same tree
+        assertFalse(new TagNode(left, "p", left.getAttributes())
+                .isSameTag(left));
+    }
+
+    @Test
+    public void descriptor() throws Exception {
+        TagNode pre = tag("PRE");
+        assertTrue(pre.isPre());
+        assertTrue(pre.isBlockLevel());
+        assertTrue(pre.getDescriptor().isContainer());
+        assertSame(pre.getDescriptor(), tag("PRE").getDescriptor());
+        assertSame(pre.getQName(), tag(new String("PRE")).getQName());
+
+        ElementDescriptor bold = ElementDescriptor.forName("b");
+        assertTrue(bold.isInline());
+        assertTrue(bold.isStyle());
+        assertFalse(bold.isSeparating());
+        assertTrue(ElementDescriptor.forName("Img").isImage());
+        assertEquals("img", ElementDescriptor.forName("Img").getName());
+    }
+
+    /**
+     * Compares random attributes as tags and as {@link AttributesMap}s.
+     */
+    @Test
+    public void sameAsAttributesMap() throws Exception {
+        Random random = new Random(7);
+        String[] names = { "id", "ID", "class", "style", "href" };
+        String[] values = { "a", "b", "a b", " b\ta ", "a:1;b:2",
+                "b : 2 ; a:1", "", ";", "a:1" };
+        for (int i = 0; i < 10000; i++) {
+            AttributesImpl left = new AttributesImpl();
+            AttributesImpl right = new AttributesImpl();
+            for (AttributesImpl attributes : new AttributesImpl[] { left,
+                    right }) {
+                for (int j = random.nextInt(3); j > 0; j--) {
+                    String name = names[random.nextInt(names.length)];
+                    if (attributes.getIndex(name) < 0)
+                        attributes.addAttribute("", name, name, "CDATA",
+                                values[random.nextInt(values.length)]);
+                }
+            }
+            TagNode leftTag = new TagNode(null, "p", left);
+            TagNode rightTag = new TagNode(null, "p", right);
+            boolean expected = new AttributesMap(left)
+                    .equals(new AttributesMap(right));
+            assertEquals(expected, leftTag.isSameTag(rightTag));
+            if (expected)
+                assertEquals(leftTag.hashCode(), rightTag.hashCode());
+        }
+    }
+
+    private static TagNode tag(String qName, String... attributes) {
+        AttributesImpl result = new AttributesImpl();
+        for (int i = 0; i < attributes.length; i += 2) {
+            result.addAttribute("", attributes[i], attributes[i], "CDATA",
+                    attributes[i + 1]);
+        }
+        return new TagNode(null, qName, result);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2007 Guy Van den Broeck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.outerj.daisy.diff.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks how text is split in atoms.
+ */
+public class TagComparatorTest {
+
+    private static final String TEXT = "<p class=\"x\">a <<b>x<</b> 1 < 2"
+            + " \u00e9t\u00e9, <> <br/>end<";
+
+    @Test
+    public void atoms() throws Exception {
+        assertEquals(Arrays.asList("TagAtom: <p class=\"x\">", "TextAtom: a",
+                "DelimiterAtom:  ", "TextAtom: <", "TagAtom: <b>",
+                "TextAtom: x<", "TagAtom: </b>", "DelimiterAtom:  ",
+                "TextAtom: 1", "DelimiterAtom:  ", "TextAtom: <",
+                "DelimiterAtom:  ", "TextAtom: 2", "DelimiterAtom:  ",
+                "TextAtom: \u00e9t\u00e9", "DelimiterAtom: ,",
+                "DelimiterAtom:  ", "TextAtom: <>", "DelimiterAtom:  ",
+                "TagAtom: <br/>", "TextAtom: end<"), toStrings(
+                new TagComparator(TEXT)));
+    }
+
+    @Test
+    public void sameAtomsFromEveryInput() throws Exception {
+        String expected = toStrings(new TagComparator(TEXT)).toString();
+        assertEquals(expected, toStrings(
+                new TagComparator(new StringBuilder(TEXT))).toString());
+        assertEquals(expected, toStrings(
+                new TagComparator(new BufferedReader(new StringReader(TEXT))))
+                .toString());
+        char[] chars = ("xx" + TEXT + "xx").toCharArray();
+        assertEquals(expected, toStrings(
+                new TagComparator(chars, 2, TEXT.length())).toString());
+        assertEquals(expected, toStrings(
+                new TagComparator(CharBuffer.wrap(TEXT))).toString());
+
+        File file = File.createTempFile("tag", ".html");
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write(TEXT.getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+            assertEquals(expected, toStrings(
+                    new TagComparator(file, "UTF-8")).toString());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void sharedAtoms() throws Exception {
+        AtomTable table = new AtomTable();
+        TagComparator left = new TagComparator("<p >a, b</p>", table);
+        TagComparator right = new TagComparator("<p >b, a</p>", table);
+        assertEquals(6, table.size());
+        assertSame(left.getAtom(0), right.getAtom(0));
+        assertSame(left.getAtom(1), right.getAtom(4));
+        assertSame(DelimiterAtom.valueOf(','), left.getAtom(2));
+        assertTrue(left.rangesEqual(3, right, 3));
+        assertFalse(left.rangesEqual(1, right, 1));
+        // slices of the source
+        assertEquals("<p >a", left.substring(0, 2));
+        assertEquals(", a</p>", right.substring(2));
+    }
+
+    /**
+     * Every '<' used to be checked by looking for the next '>', which took
+     * quadratic time here.
+     */
+    @Test
+    public void manyOpeningBrackets() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            text.append('<');
+        }
+        text.append("p>");
+        TagComparator comparator = new TagComparator(text);
+        assertEquals(2, comparator.getRangeCount());
+        assertEquals(99999, comparator.getAtom(0).getFullText().length());
+        assertEquals("<p>", comparator.getAtom(1).getFullText());
+    }
+
+    private static List<String> toStrings(TagComparator comparator) {
+        List<String> result = new ArrayList<String>();
+        for (Atom atom : comparator.getAtoms()) {
+            result.add(atom.toString());
+        }
+        return result;
+    }
+}